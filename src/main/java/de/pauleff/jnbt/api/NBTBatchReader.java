@@ -0,0 +1,189 @@
+package de.pauleff.jnbt.api;
+
+import de.pauleff.jnbt.formats.binary.NBTReader;
+import de.pauleff.jnbt.formats.binary.ReaderLimits;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads all NBT files below a directory in parallel.
+ * Files ending in {@code .dat} or {@code .nbt} are parsed on a work-stealing {@link ForkJoinPool},
+ * each worker thread reusing a single {@link NBTReader}. Results are handed to a consumer in completion order
+ * on the calling thread, so the consumer needs no synchronization.
+ *
+ * <p>The number of files in flight (being parsed or waiting for the consumer) is bounded by
+ * {@link #setMaxInFlight(int)}, which caps the memory held by parsed trees no matter how large the directory is.</p>
+ *
+ * <pre>{@code
+ * long count = new NBTBatchReader()
+ *     .setParallelism(8)
+ *     .readDirectory(Path.of("world/playerdata"), result -> {
+ *         if (result.isSuccess()) audit(result.getRoot());
+ *         else log(result.getFile(), result.getError());
+ *     });
+ * }</pre>
+ *
+ * @author Paul Ferlitz
+ */
+public class NBTBatchReader
+{
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxInFlight = parallelism * 4;
+    private ReaderLimits limits = ReaderLimits.DEFAULT;
+
+    /**
+     * Sets the number of worker threads parsing files.
+     *
+     * @param parallelism The number of worker threads
+     * @return This batch reader for method chaining
+     * @throws IllegalArgumentException If the parallelism is not positive
+     */
+    public NBTBatchReader setParallelism(int parallelism)
+    {
+        if (parallelism <= 0)
+        {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets how many files may be parsed or waiting for the consumer at the same time.
+     *
+     * @param maxInFlight The maximum number of files in flight
+     * @return This batch reader for method chaining
+     * @throws IllegalArgumentException If the limit is not positive
+     */
+    public NBTBatchReader setMaxInFlight(int maxInFlight)
+    {
+        if (maxInFlight <= 0)
+        {
+            throw new IllegalArgumentException("In-flight limit must be positive: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Sets the resource limits enforced for every file.
+     *
+     * @param limits The limits to enforce
+     * @return This batch reader for method chaining
+     * @see NBTReader#setLimits(ReaderLimits)
+     */
+    public NBTBatchReader setLimits(ReaderLimits limits)
+    {
+        if (limits == null)
+        {
+            throw new IllegalArgumentException("Reader limits cannot be null");
+        }
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Returns whether a path is picked up by {@link #readDirectory(Path, Consumer)}.
+     *
+     * @param path The path to check
+     * @return {@code true} for regular files ending in {@code .dat} or {@code .nbt}
+     */
+    public static boolean isNBTFile(Path path)
+    {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return (name.endsWith(".dat") || name.endsWith(".nbt")) && Files.isRegularFile(path);
+    }
+
+    /**
+     * Reads every NBT file below a directory, including subdirectories.
+     * Unreadable or corrupted files, and {@link Error}s while reading them, are reported as failed
+     * {@link NBTReadResult}s and don't stop the batch.
+     * If the consumer throws, outstanding work is cancelled and the exception is rethrown.
+     *
+     * @param directory The directory to scan
+     * @param consumer  Receives one result per file, in completion order, on the calling thread
+     * @return The number of files read
+     * @throws IOException If the directory cannot be scanned or the calling thread is interrupted
+     */
+    public long readDirectory(Path directory, Consumer<NBTReadResult> consumer) throws IOException
+    {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ThreadLocal<NBTReader> readers = ThreadLocal.withInitial(() -> new NBTReader().setLimits(limits));
+        BlockingQueue<NBTReadResult> completed = new LinkedBlockingQueue<>();
+        long count = 0;
+        int inFlight = 0;
+
+        try (Stream<Path> paths = Files.walk(directory))
+        {
+            Iterator<Path> iterator = paths.filter(NBTBatchReader::isNBTFile).iterator();
+            while (iterator.hasNext())
+            {
+                File file = iterator.next().toFile();
+                if (inFlight == maxInFlight)
+                {
+                    consumer.accept(take(completed));
+                    inFlight--;
+                }
+                pool.execute(() -> completed.add(read(readers, file)));
+                inFlight++;
+                count++;
+            }
+            while (inFlight > 0)
+            {
+                consumer.accept(take(completed));
+                inFlight--;
+            }
+            return count;
+        } catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        } finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads a file with the worker's reader, capturing every {@link Throwable} in the result.
+     * Each task has to produce a result, {@link #readDirectory(Path, Consumer)} would wait for it forever otherwise.
+     * After an {@link Error} the worker's reader is dropped, as it may have been left half way through the file.
+     */
+    private static NBTReadResult read(ThreadLocal<NBTReader> readers, File file)
+    {
+        try
+        {
+            return NBTReadResult.success(file, readers.get().reset(file).read());
+        } catch (Exception e)
+        {
+            return NBTReadResult.failure(file, e);
+        } catch (Throwable e)
+        {
+            readers.remove();
+            return NBTReadResult.failure(file, e);
+        }
+    }
+
+    private static NBTReadResult take(BlockingQueue<NBTReadResult> completed) throws IOException
+    {
+        try
+        {
+            return completed.take();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for batch results");
+        }
+    }
+}
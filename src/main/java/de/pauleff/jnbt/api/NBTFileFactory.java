@@ -3,14 +3,29 @@ package de.pauleff.jnbt.api;
 import de.pauleff.jnbt.core.Tag;
 import de.pauleff.jnbt.core.Tag_Compound;
 import de.pauleff.jnbt.formats.binary.Compression_Types;
+import de.pauleff.jnbt.formats.binary.LazyCompoundTag;
+import de.pauleff.jnbt.formats.binary.MappedNBTReader;
 import de.pauleff.jnbt.formats.binary.NBTFileHandler;
 import de.pauleff.jnbt.formats.binary.NBTReader;
+import de.pauleff.jnbt.formats.binary.NBTStreamReader;
+import de.pauleff.jnbt.formats.binary.NBTValidator;
 import de.pauleff.jnbt.formats.binary.NBTWriter;
+import de.pauleff.jnbt.formats.binary.ParallelNBTReader;
+import de.pauleff.jnbt.formats.binary.ReaderLimits;
+import de.pauleff.jnbt.formats.binary.WriterSettings;
 
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Factory for creating NBT file I/O handlers with automatic format detection.
@@ -36,6 +51,14 @@ import java.io.IOException;
  */
 public class NBTFileFactory
 {
+    /**
+     * Default number of files read at the same time by the asynchronous methods.
+     */
+    public static final int DEFAULT_ASYNC_CONCURRENCY = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final ExecutorService ASYNC_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final Semaphore ASYNC_PERMITS = new Semaphore(DEFAULT_ASYNC_CONCURRENCY);
+
     /**
      * Creates a reader that automatically detects compression format.
      *
@@ -58,6 +81,46 @@ public class NBTFileFactory
         return new NBTReader(dis);
     }
 
+    /**
+     * Creates a reader that memory-maps an uncompressed file instead of streaming it.
+     * Best suited for large uncompressed files such as structures and schematics.
+     *
+     * @param nbtFile The uncompressed {@link java.io.File} to read NBT data from
+     * @return New {@link INBTReader} ready to parse the mapped file
+     * @throws IOException              If the file doesn't exist or cannot be mapped
+     * @throws IllegalArgumentException If the file is compressed
+     */
+    public static INBTReader createMappedReader(File nbtFile) throws IOException
+    {
+        return new MappedNBTReader(nbtFile);
+    }
+
+    /**
+     * Creates a reader that decodes the children of the root compound in parallel.
+     * Worth it for single files of many megabytes, such as large structures and schematics.
+     *
+     * @param nbtFile The {@link java.io.File} to read NBT data from
+     * @return New {@link ParallelNBTReader} ready to parse the file
+     * @throws IOException If the file cannot be read
+     */
+    public static ParallelNBTReader createParallelReader(File nbtFile) throws IOException
+    {
+        return new ParallelNBTReader(nbtFile);
+    }
+
+    /**
+     * Creates an event-based stream reader that walks the file without building any tags.
+     * Useful when only a few fields of a large file are needed.
+     *
+     * @param nbtFile The {@link java.io.File} to read NBT data from
+     * @return New {@link NBTStreamReader} positioned before the root compound
+     * @throws IOException If the file cannot be opened
+     */
+    public static NBTStreamReader createStreamReader(File nbtFile) throws IOException
+    {
+        return new NBTStreamReader(nbtFile);
+    }
+
     /**
      * Creates a writer that preserves the original file's compression format.
      * File must exist to detect compression type.
@@ -104,6 +167,73 @@ public class NBTFileFactory
         }
     }
 
+    /**
+     * Reads only the given tag paths of an NBT file and skips everything else without building tags.
+     * Paths are dot-separated and relative to the root compound, e.g. {@code "Data.Player.Pos"}, names are escaped
+     * as by {@link de.pauleff.jnbt.formats.binary.NBTIndex#escapeName(String)}.
+     * The returned root contains the selected tags and the compounds leading to them.
+     *
+     * @param nbtFile The {@link java.io.File} to read
+     * @param paths   The tag paths to materialize
+     * @return The root {@link ICompoundTag} containing only the selected subtrees
+     * @throws IOException              If the file cannot be read or parsed
+     * @throws IllegalArgumentException If a path is empty, has an empty segment, an invalid escape or a list index
+     */
+    public static ICompoundTag readNBTFile(File nbtFile, Collection<String> paths) throws IOException
+    {
+        try (NBTReader reader = new NBTReader(nbtFile))
+        {
+            return reader.select(paths).read();
+        }
+    }
+
+    /**
+     * Reads an NBT file from an untrusted source while enforcing resource limits.
+     * Input exceeding the limits, e.g. a decompression bomb, is rejected before the memory is allocated.
+     *
+     * @param nbtFile The {@link java.io.File} to read
+     * @param limits  The {@link ReaderLimits} to enforce
+     * @return The root {@link ICompoundTag} containing all NBT data
+     * @throws IOException If the file cannot be read or parsed, or exceeds the limits
+     */
+    public static ICompoundTag readNBTFile(File nbtFile, ReaderLimits limits) throws IOException
+    {
+        try (NBTReader reader = new NBTReader(nbtFile))
+        {
+            return reader.setLimits(limits).read();
+        }
+    }
+
+    /**
+     * Reads NBT data from any stream, e.g. a HTTP body or a byte array, detecting its compression automatically.
+     * The stream is closed once the data has been read.
+     *
+     * @param in The {@link java.io.InputStream} containing compressed or uncompressed NBT data
+     * @return The root {@link ICompoundTag} containing all NBT data
+     * @throws IOException If the stream cannot be read or parsed
+     */
+    public static ICompoundTag readNBTStream(InputStream in) throws IOException
+    {
+        try (NBTReader reader = new NBTReader(NBTFileHandler.loadNBTToReader(in)))
+        {
+            return reader.read();
+        }
+    }
+
+    /**
+     * Reads an NBT file into memory and returns a root compound that decodes its children on first access.
+     * Best suited for large files of which only a few tags are ever looked at.
+     *
+     * @param nbtFile The {@link java.io.File} to read
+     * @return The lazily decoded root {@link ICompoundTag}
+     * @throws IOException If the file cannot be read or doesn't start with a compound
+     * @see LazyCompoundTag
+     */
+    public static ICompoundTag readNBTFileLazy(File nbtFile) throws IOException
+    {
+        return LazyCompoundTag.read(nbtFile);
+    }
+
     /**
      * Writes an NBT compound tag to file with automatic compression detection.
      * If the file exists, preserves its original compression format.
@@ -143,6 +273,24 @@ public class NBTFileFactory
         }
     }
 
+    /**
+     * Writes an NBT compound tag to file with specified compression and writer settings,
+     * e.g. to save atomically with rotating backups.
+     *
+     * @param nbtFile     The {@link java.io.File} to write to
+     * @param root        The {@link ICompoundTag} to write
+     * @param compression The {@link Compression_Types} to use
+     * @param settings    The {@link WriterSettings} to write with
+     * @throws IOException If the file cannot be written
+     */
+    public static void writeNBTFile(File nbtFile, ICompoundTag root, Compression_Types compression, WriterSettings settings) throws IOException
+    {
+        try (INBTWriter writer = new NBTWriter(nbtFile, compression, settings))
+        {
+            writer.write(root);
+        }
+    }
+
     /**
      * Copies an NBT file to a new location, preserving compression format.
      *
@@ -158,23 +306,115 @@ public class NBTFileFactory
     }
 
     /**
-     * Checks if a file appears to be a valid NBT file by attempting to read its header.
+     * Checks if a file is a valid NBT file by walking its complete structure.
+     * No tags are built, so this is much cheaper than reading the file.
      *
      * @param nbtFile The {@link java.io.File} to validate
-     * @return {@code true} if the file appears to be valid NBT, {@code false} otherwise
+     * @return {@code true} if the file is valid NBT, {@code false} otherwise
+     * @see #validateNBTFile(File, ReaderLimits)
      */
     public static boolean isValidNBTFile(File nbtFile)
     {
         try
         {
-            readNBTFile(nbtFile);
-            return true;
+            return new NBTValidator().validate(nbtFile).isValid();
         } catch (Exception e)
         {
             return false;
         }
     }
 
+    /**
+     * Validates a file without building any tags, reporting the first problem and its byte offset.
+     *
+     * @param nbtFile The {@link java.io.File} to validate
+     * @param limits  The {@link ReaderLimits} the file has to stay within
+     * @return The {@link NBTValidator.Result} of the validation
+     * @throws IOException If the file cannot be opened
+     */
+    public static NBTValidator.Result validateNBTFile(File nbtFile, ReaderLimits limits) throws IOException
+    {
+        return new NBTValidator().setLimits(limits).validate(nbtFile);
+    }
+
+    /*
+     * ========== ASYNCHRONOUS OPERATIONS ==========
+     */
+
+    /**
+     * Reads an NBT file on a virtual thread.
+     * At most {@link #DEFAULT_ASYNC_CONCURRENCY} files are read at the same time across all callers,
+     * further calls wait for a free slot without blocking the caller.
+     *
+     * @param nbtFile The {@link java.io.File} to read
+     * @return Future completing with the root {@link ICompoundTag}, or exceptionally with the read error,
+     * including {@link Error}s
+     */
+    public static CompletableFuture<ICompoundTag> readNBTFileAsync(File nbtFile)
+    {
+        CompletableFuture<ICompoundTag> future = new CompletableFuture<>();
+        ASYNC_EXECUTOR.execute(() ->
+        {
+            NBTReadResult result = readWithPermit(nbtFile);
+            if (result.isSuccess())
+            {
+                future.complete(result.getRoot());
+            } else
+            {
+                future.completeExceptionally(result.getError());
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Reads many NBT files on virtual threads, at most {@link #DEFAULT_ASYNC_CONCURRENCY} at the same time.
+     *
+     * @param nbtFiles The {@link java.io.File}s to read
+     * @return Future completing with one {@link NBTReadResult} per file, in the order of the given collection
+     * @see #readAllAsync(Collection, int)
+     */
+    public static CompletableFuture<List<NBTReadResult>> readAllAsync(Collection<File> nbtFiles)
+    {
+        return readAllAsync(nbtFiles, DEFAULT_ASYNC_CONCURRENCY);
+    }
+
+    /**
+     * Reads many NBT files on virtual threads with a bounded number of files in progress at once.
+     * Only {@code maxConcurrency} worker threads are started, each takes the next file once it is done with the last.
+     * Every read also counts against the {@link #DEFAULT_ASYNC_CONCURRENCY} shared by all asynchronous calls,
+     * so concurrent batches together never read more files at the same time than that.
+     * Errors, including {@link Error}s, are captured per file, so the returned future always completes normally
+     * and a corrupted file doesn't hide the results of the others.
+     *
+     * @param nbtFiles       The {@link java.io.File}s to read
+     * @param maxConcurrency The maximum number of files of this call read at the same time
+     * @return Future completing with one {@link NBTReadResult} per file, in the order of the given collection
+     * @throws IllegalArgumentException If the concurrency limit is not positive
+     */
+    public static CompletableFuture<List<NBTReadResult>> readAllAsync(Collection<File> nbtFiles, int maxConcurrency)
+    {
+        if (maxConcurrency <= 0)
+        {
+            throw new IllegalArgumentException("Concurrency limit must be positive: " + maxConcurrency);
+        }
+        File[] files = nbtFiles.toArray(new File[0]);
+        NBTReadResult[] results = new NBTReadResult[files.length];
+        AtomicInteger next = new AtomicInteger();
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(maxConcurrency, files.length)];
+        for (int w = 0; w < workers.length; w++)
+        {
+            workers[w] = CompletableFuture.runAsync(() ->
+            {
+                for (int i = next.getAndIncrement(); i < files.length; i = next.getAndIncrement())
+                {
+                    results[i] = readWithPermit(files[i]);
+                }
+            }, ASYNC_EXECUTOR);
+        }
+        return CompletableFuture.allOf(workers).thenApply(ignored -> List.of(results));
+    }
+
     /*
      * ========== UPDATE OPERATIONS ==========
      */
@@ -248,6 +488,32 @@ public class NBTFileFactory
      * ========== HELPER METHODS ==========
      */
 
+    /**
+     * Reads a file once one of the shared {@link #ASYNC_PERMITS} is available, capturing any error in the result.
+     * {@link Error}s are captured too, otherwise they would leave the futures waiting on this read pending forever.
+     */
+    private static NBTReadResult readWithPermit(File nbtFile)
+    {
+        try
+        {
+            ASYNC_PERMITS.acquire();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return NBTReadResult.failure(nbtFile, e);
+        }
+        try
+        {
+            return NBTReadResult.success(nbtFile, readNBTFile(nbtFile));
+        } catch (Throwable e)
+        {
+            return NBTReadResult.failure(nbtFile, e);
+        } finally
+        {
+            ASYNC_PERMITS.release();
+        }
+    }
+
     /**
      * Updates a tag value deep within a compound structure using dot notation.
      */
@@ -0,0 +1,97 @@
+package de.pauleff.jnbt.api;
+
+import java.io.File;
+
+/**
+ * Outcome of reading a single file as part of a batch.
+ * Holds either the parsed root compound or the error that prevented reading it,
+ * so one corrupted file doesn't abort the whole batch.
+ *
+ * @author Paul Ferlitz
+ */
+public final class NBTReadResult
+{
+    private final File file;
+    private final ICompoundTag root;
+    private final Throwable error;
+
+    private NBTReadResult(File file, ICompoundTag root, Throwable error)
+    {
+        this.file = file;
+        this.root = root;
+        this.error = error;
+    }
+
+    /**
+     * Creates the result of a successfully read file.
+     *
+     * @param file The file that was read
+     * @param root The parsed root compound
+     * @return new successful {@link NBTReadResult}
+     */
+    public static NBTReadResult success(File file, ICompoundTag root)
+    {
+        return new NBTReadResult(file, root, null);
+    }
+
+    /**
+     * Creates the result of a file that could not be read.
+     *
+     * @param file  The file that was read
+     * @param error The exception or error that occurred
+     * @return new failed {@link NBTReadResult}
+     */
+    public static NBTReadResult failure(File file, Throwable error)
+    {
+        return new NBTReadResult(file, null, error);
+    }
+
+    /**
+     * Returns the file this result belongs to.
+     *
+     * @return The read file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Returns whether the file was read successfully.
+     *
+     * @return {@code true} if {@link #getRoot()} holds the parsed data
+     */
+    public boolean isSuccess()
+    {
+        return error == null;
+    }
+
+    /**
+     * Returns the parsed root compound.
+     *
+     * @return The root compound, or {@code null} if reading failed
+     */
+    public ICompoundTag getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * Returns what prevented reading the file, usually an {@link java.io.IOException},
+     * but {@link Error}s like running out of memory are captured as well.
+     *
+     * @return The error, or {@code null} if reading succeeded
+     */
+    public Throwable getError()
+    {
+        return error;
+    }
+
+    @Override
+    public String toString()
+    {
+        return isSuccess()
+                ? String.format("NBTReadResult{file=%s, success}", file)
+                : String.format("NBTReadResult{file=%s, error=%s}", file, error.getMessage());
+    }
+}
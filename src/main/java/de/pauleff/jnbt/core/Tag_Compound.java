@@ -6,6 +6,7 @@ import de.pauleff.jnbt.api.ITag;
 import de.pauleff.jnbt.util.NBTTags;
 
 import java.util.ArrayList;
+import java.util.Objects;
 
 /**
  * Represents an NBT compound tag - a named collection of heterogeneous tags
@@ -479,6 +480,27 @@ public class Tag_Compound extends Collection_Tag implements ICompoundTag
         return getData().isEmpty();
     }
 
+    /**
+     * Compares compounds by name and children only, so differently backed compounds
+     * (e.g. a lazily decoded one) equal a regular compound holding the same tags.
+     *
+     * @param obj the object to compare with
+     * @return true if obj is a compound with the same name and children
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) return true;
+        if (!(obj instanceof Tag_Compound compound)) return false;
+        return getName().equals(compound.getName()) && Objects.equals(getData(), compound.getData());
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(getId(), getName(), getData());
+    }
+
     /**
      * Generates a hierarchical string representation showing all nested tags.
      *
@@ -0,0 +1,278 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.core.Collection_Tag;
+import de.pauleff.jnbt.core.Tag;
+import de.pauleff.jnbt.core.Tag_Compound;
+import de.pauleff.jnbt.util.NBTTags;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compound tag that keeps the raw decompressed NBT bytes and only decodes children when they are accessed.
+ * On first access a compound scans its own entries into an offset index (names, types and payload offsets),
+ * nested payloads are skipped by length. A child is decoded the first time it is looked up by name,
+ * nested compounds are again lazy. Untouched parts of a file never turn into {@link Tag} objects.
+ *
+ * <p>Lookups via {@link #getTag(String)}, {@link #getInt(String)} and the other getters are served from the index.
+ * They search depth-first in file order like {@link Tag_Compound} does, descending into nested compounds lazily;
+ * a list is only decoded if the raw bytes show that it holds the name. Everything that needs the full child list,
+ * such as {@link #getData()}, {@link #equals(Object)} or any modification, decodes all children once and from then
+ * on the tag behaves exactly like a {@link Tag_Compound}.</p>
+ *
+ * <p>As decoding is deferred, corrupted data is reported as an {@link UncheckedIOException} on access.</p>
+ *
+ * @author Paul Ferlitz
+ */
+public class LazyCompoundTag extends Tag_Compound
+{
+    private final ByteBuffer source;
+    private final int bodyOffset;
+
+    private boolean indexed;
+    private boolean materialized;
+    private String[] names;
+    private int[] types;
+    private int[] offsets;
+    private Tag<?>[] decoded;
+    private int count;
+
+    /**
+     * Creates a lazy compound whose entries start at the given offset of the source buffer.
+     *
+     * @param name       The tag name
+     * @param source     The buffer holding the decompressed NBT data
+     * @param bodyOffset The absolute offset of the compound's first entry
+     */
+    LazyCompoundTag(String name, ByteBuffer source, int bodyOffset)
+    {
+        super(name, null);
+        this.source = source;
+        this.bodyOffset = bodyOffset;
+    }
+
+    /**
+     * Reads a NBT file into memory and returns its root as lazy compound.
+     * The file is decompressed up front, decoding of tags is deferred.
+     *
+     * @param nbtFile The target NBT file
+     * @return The lazy root compound
+     * @throws IOException If the file cannot be read or doesn't start with a compound
+     */
+    public static LazyCompoundTag read(File nbtFile) throws IOException
+    {
+        byte[] data;
+        try (DataInputStream dis = NBTFileHandler.loadNBTToReader(nbtFile))
+        {
+            data = dis.readAllBytes();
+        }
+        return of(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Creates a lazy root compound from uncompressed NBT data.
+     * The buffer is read from its current position and must not be modified while the tag is in use.
+     *
+     * @param data The uncompressed NBT data
+     * @return The lazy root compound
+     * @throws IOException If the data doesn't start with a compound
+     */
+    public static LazyCompoundTag of(ByteBuffer data) throws IOException
+    {
+        ByteBuffer source = data.slice().asReadOnlyBuffer();
+        PositionTrackingDataInputStream stream = new PositionTrackingDataInputStream(source.duplicate());
+        int type = stream.readByte();
+        if (type != NBTTags.Tag_Compound.getId())
+        {
+            throw new IOException(stream.createContextualError(
+                    String.format("Root tag must be a compound but was type %d", type)));
+        }
+        String name = readName(stream);
+        return new LazyCompoundTag(name, source, (int) stream.getBytesRead());
+    }
+
+    /**
+     * Returns whether this compound has already been decoded completely.
+     *
+     * @return {@code true} once the compound behaves like a regular {@link Tag_Compound}
+     */
+    public boolean isMaterialized()
+    {
+        return materialized;
+    }
+
+    @Override
+    public ArrayList<Tag<?>> getData()
+    {
+        materialize();
+        return super.getData();
+    }
+
+    @Override
+    public void setData(ArrayList<Tag<?>> data)
+    {
+        materialize();
+        super.setData(data);
+    }
+
+    @Override
+    public Tag<?> getTagByName(String name)
+    {
+        if (materialized)
+        {
+            // Same order as Collection_Tag, but lazy children keep searching without decoding
+            for (Tag<?> child : super.getData())
+            {
+                Tag<?> found = child.getName().equals(name) ? child
+                        : child instanceof Collection_Tag collection ? collection.getTagByName(name) : null;
+                if (found != null) return found;
+            }
+            return null;
+        }
+
+        index();
+        for (int i = 0; i < count; i++)
+        {
+            if (names[i].equals(name))
+            {
+                return decode(i);
+            }
+            Tag<?> found = null;
+            if (types[i] == NBTTags.Tag_Compound.getId() || decoded[i] != null)
+            {
+                found = decode(i) instanceof Collection_Tag collection ? collection.getTagByName(name) : null;
+            } else if (types[i] == NBTTags.Tag_List.getId() && listContains(i, name))
+            {
+                found = ((Collection_Tag) decode(i)).getTagByName(name);
+            }
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    @Override
+    public int size()
+    {
+        if (materialized) return super.size();
+        index();
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * Scans this compound's entries into the offset index, skipping nested payloads by length.
+     */
+    private void index()
+    {
+        if (indexed) return;
+        try
+        {
+            PositionTrackingDataInputStream stream = streamAt(bodyOffset);
+            count = 0;
+            names = new String[8];
+            types = new int[8];
+            offsets = new int[8];
+            while (true)
+            {
+                int type = stream.readByte();
+                if (type == NBTTags.Tag_End.getId()) break;
+                String name = NBTStructure.normalizeName(readName(stream));
+                stream.setCurrentContext(1, name, type);
+                if (count == names.length)
+                {
+                    names = Arrays.copyOf(names, count * 2);
+                    types = Arrays.copyOf(types, count * 2);
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                names[count] = name;
+                types[count] = type;
+                offsets[count] = bodyOffset + (int) stream.getBytesRead();
+                count++;
+                NBTStructure.skipPayload(stream, type);
+            }
+            decoded = new Tag<?>[count];
+            indexed = true;
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to index lazy compound '" + getName() + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes a single indexed child, caching the result.
+     */
+    private Tag<?> decode(int i)
+    {
+        if (decoded[i] != null) return decoded[i];
+        if (types[i] == NBTTags.Tag_Compound.getId())
+        {
+            decoded[i] = new LazyCompoundTag(names[i], source, offsets[i]);
+        } else
+        {
+            try
+            {
+                decoded[i] = new NBTReader(streamAt(offsets[i])).readPayload(types[i], names[i]);
+            } catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to decode tag '" + names[i] + "': " + e.getMessage(), e);
+            }
+        }
+        return decoded[i];
+    }
+
+    /**
+     * Checks the raw bytes of an undecoded list child for a tag with the given name.
+     */
+    private boolean listContains(int i, String name)
+    {
+        try
+        {
+            PositionTrackingDataInputStream stream = streamAt(offsets[i]);
+            int listType = stream.readByte();
+            return NBTStructure.containsName(stream, listType, NBTStructure.readListLength(stream, listType), name);
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to search tag '" + names[i] + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes all children and switches over to the regular {@link Tag_Compound} behaviour.
+     */
+    private void materialize()
+    {
+        if (materialized) return;
+        index();
+        ArrayList<Tag<?>> children = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            children.add(decode(i));
+        }
+        this.data = children;
+        this.materialized = true;
+        this.names = null;
+        this.types = null;
+        this.offsets = null;
+        this.decoded = null;
+    }
+
+    private PositionTrackingDataInputStream streamAt(int offset)
+    {
+        return new PositionTrackingDataInputStream(source.duplicate().position(offset));
+    }
+
+    private static String readName(PositionTrackingDataInputStream stream) throws IOException
+    {
+        return stream.readUTF(stream.readUnsignedShort(), NBTNameCache.shared());
+    }
+}
@@ -0,0 +1,97 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.api.INBTReader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader for uncompressed NBT files that memory-maps the file instead of streaming it.
+ * Primitives are decoded straight out of the mapped region and int/long arrays are bulk copied,
+ * which avoids both the copy into a read buffer and the per-element decoding of large arrays.
+ * Only {@link Compression_Types#NONE} files can be mapped, compressed files have to go through {@link NBTReader}.
+ *
+ * @author Paul Ferlitz
+ */
+public class MappedNBTReader implements INBTReader
+{
+    private final NBTReader reader;
+
+    /**
+     * Create a reader by mapping the target NBT file into memory.
+     *
+     * @param nbtFile The uncompressed target NBT file.
+     * @throws FileNotFoundException    If the file doesn't exist.
+     * @throws IOException              If the file cannot be mapped or is larger than 2 GB.
+     * @throws IllegalArgumentException If the file is compressed.
+     */
+    public MappedNBTReader(File nbtFile) throws IOException
+    {
+        this.reader = new NBTReader(new PositionTrackingDataInputStream(map(nbtFile)));
+    }
+
+    /**
+     * Maps an uncompressed NBT file into memory.
+     *
+     * @param nbtFile The uncompressed target NBT file.
+     * @return The read-only mapping of the complete file.
+     * @throws FileNotFoundException    If the file doesn't exist.
+     * @throws IOException              If the file cannot be mapped or is larger than 2 GB.
+     * @throws IllegalArgumentException If the file is compressed.
+     */
+    static MappedByteBuffer map(File nbtFile) throws IOException
+    {
+        if (Files.notExists(nbtFile.toPath()))
+        {
+            throw new FileNotFoundException(String.format("The file %s doesn't exist!", nbtFile.getPath()));
+        }
+        Compression_Types compression = NBTFileHandler.getCompressionType(nbtFile);
+        if (compression != Compression_Types.NONE)
+        {
+            throw new IllegalArgumentException(String.format("The file %s is compressed with %s and cannot be memory-mapped!",
+                    nbtFile.getName(), compression.getName()));
+        }
+
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(nbtFile.toPath(), StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException(String.format("The file %s is too large to be memory-mapped (%d bytes)!",
+                        nbtFile.getName(), size));
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Parses the mapped NBT file and returns the root compound tag.
+     *
+     * @return The root {@link ICompoundTag} containing the complete NBT structure
+     * @throws IOException If the file is corrupted or doesn't follow NBT specification
+     */
+    @Override
+    public ICompoundTag read() throws IOException
+    {
+        return reader.read();
+    }
+
+    /**
+     * Method to close the reader.
+     * The mapping itself is released by the JVM once it is no longer referenced.
+     *
+     * @throws IOException When encountering an error whilst closing the reader.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        reader.close();
+    }
+}
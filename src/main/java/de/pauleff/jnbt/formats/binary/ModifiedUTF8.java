@@ -0,0 +1,268 @@
+package de.pauleff.jnbt.formats.binary;
+
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec for the modified UTF-8 encoding that NBT uses for tag names and string payloads.
+ * It differs from standard UTF-8 in two places: {@code U+0000} is encoded as the two bytes {@code C0 80}
+ * and supplementary characters are encoded as two three-byte surrogates instead of one four-byte sequence.
+ *
+ * <p>Pure ASCII input, by far the most common case, takes a fast path that copies the bytes as Latin-1
+ * without decoding individual characters. For compatibility with files written by older versions of jNBT,
+ * which used standard UTF-8, raw NUL bytes and four-byte sequences are accepted when decoding.</p>
+ *
+ * @author Paul Ferlitz
+ * @see java.io.DataInput#readUTF()
+ */
+public final class ModifiedUTF8
+{
+    /**
+     * Longest encoded string in bytes that fits the unsigned short length prefix.
+     */
+    public static final int MAX_ENCODED_LENGTH = 65535;
+
+    private ModifiedUTF8()
+    {
+    }
+
+    /**
+     * Decodes a modified UTF-8 byte range.
+     *
+     * @param bytes  The array holding the encoded string
+     * @param offset Start of the encoded string
+     * @param length Length of the encoded string in bytes
+     * @return The decoded string
+     * @throws UTFDataFormatException If the bytes are not valid modified UTF-8
+     */
+    public static String decode(byte[] bytes, int offset, int length) throws UTFDataFormatException
+    {
+        int end = offset + length;
+        int i = offset;
+        while (i < end && bytes[i] >= 0)
+        {
+            i++;
+        }
+        if (i == end)
+        {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+
+        char[] chars = new char[length];
+        int count = 0;
+        for (int j = offset; j < i; j++)
+        {
+            chars[count++] = (char) bytes[j];
+        }
+        while (i < end)
+        {
+            int b = bytes[i] & 0xFF;
+            if (b < 0x80)
+            {
+                chars[count++] = (char) b;
+                i++;
+            } else if ((b & 0xE0) == 0xC0)
+            {
+                int b2 = continuation(bytes, i, 1, end);
+                chars[count++] = (char) (((b & 0x1F) << 6) | b2);
+                i += 2;
+            } else if ((b & 0xF0) == 0xE0)
+            {
+                int b2 = continuation(bytes, i, 1, end);
+                int b3 = continuation(bytes, i, 2, end);
+                chars[count++] = (char) (((b & 0x0F) << 12) | (b2 << 6) | b3);
+                i += 3;
+            } else if ((b & 0xF8) == 0xF0)
+            {
+                // Standard UTF-8 supplementary character as written by older jNBT versions
+                int codePoint = ((b & 0x07) << 18) | (continuation(bytes, i, 1, end) << 12)
+                        | (continuation(bytes, i, 2, end) << 6) | continuation(bytes, i, 3, end);
+                if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT || codePoint > Character.MAX_CODE_POINT)
+                {
+                    throw new UTFDataFormatException("Malformed input around byte " + (i - offset));
+                }
+                chars[count++] = Character.highSurrogate(codePoint);
+                chars[count++] = Character.lowSurrogate(codePoint);
+                i += 4;
+            } else
+            {
+                throw new UTFDataFormatException("Malformed input around byte " + (i - offset));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Decodes a byte range, replacing every malformed sequence with {@code U+FFFD} instead of failing.
+     * A malformed sequence is its lead byte plus the continuation bytes that follow it, up to the length the
+     * lead byte announces, so the text around it is kept. Used to salvage strings from corrupted files.
+     *
+     * @param bytes  The array holding the encoded string
+     * @param offset Start of the encoded string
+     * @param length Length of the encoded string in bytes
+     * @return The decoded string
+     */
+    public static String decodeLossy(byte[] bytes, int offset, int length)
+    {
+        StringBuilder decoded = new StringBuilder(length);
+        int end = offset + length;
+        int i = offset;
+        while (i < end)
+        {
+            int malformed = validate(bytes, i, end - i);
+            int validEnd = malformed < 0 ? end : i + malformed;
+            if (validEnd > i)
+            {
+                try
+                {
+                    decoded.append(decode(bytes, i, validEnd - i));
+                } catch (UTFDataFormatException e)
+                {
+                    throw new IllegalStateException("validate() accepted bytes that decode() rejects", e);
+                }
+            }
+            if (malformed < 0) break;
+            decoded.append('\uFFFD');
+            i = validEnd + malformedLength(bytes, validEnd, end);
+        }
+        return decoded.toString();
+    }
+
+    /**
+     * Checks whether a byte range is valid modified UTF-8 without decoding it.
+     * Applies the same rules as {@link #decode(byte[], int, int)}, so a valid range always decodes.
+     *
+     * @param bytes  The array holding the encoded string
+     * @param offset Start of the encoded string
+     * @param length Length of the encoded string in bytes
+     * @return The relative offset of the first malformed byte, or -1 if the range is valid
+     */
+    public static int validate(byte[] bytes, int offset, int length)
+    {
+        int end = offset + length;
+        int i = offset;
+        while (i < end)
+        {
+            int b = bytes[i] & 0xFF;
+            int size;
+            if (b < 0x80) size = 1;
+            else if ((b & 0xE0) == 0xC0) size = 2;
+            else if ((b & 0xF0) == 0xE0) size = 3;
+            else if ((b & 0xF8) == 0xF0) size = 4;
+            else return i - offset;
+
+            if (i + size > end) return i - offset;
+            for (int k = 1; k < size; k++)
+            {
+                if ((bytes[i + k] & 0xC0) != 0x80) return i - offset;
+            }
+            if (size == 4)
+            {
+                int codePoint = ((b & 0x07) << 18) | ((bytes[i + 1] & 0x3F) << 12)
+                        | ((bytes[i + 2] & 0x3F) << 6) | (bytes[i + 3] & 0x3F);
+                if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT || codePoint > Character.MAX_CODE_POINT)
+                {
+                    return i - offset;
+                }
+            }
+            i += size;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of bytes the modified UTF-8 encoding of a string takes.
+     *
+     * @param value The string to measure
+     * @return The encoded length in bytes
+     */
+    public static int encodedLength(String value)
+    {
+        int length = value.length();
+        int encoded = length;
+        for (int i = 0; i < length; i++)
+        {
+            char c = value.charAt(i);
+            if (c == 0 || c >= 0x80)
+            {
+                encoded += c >= 0x800 ? 2 : 1;
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Encodes a string as modified UTF-8 into the given array.
+     * The array must have room for {@link #encodedLength(String)} bytes.
+     *
+     * @param value  The string to encode
+     * @param dst    The target array
+     * @param offset Where to start writing in the target array
+     * @return The number of bytes written
+     */
+    public static int encode(String value, byte[] dst, int offset)
+    {
+        int length = value.length();
+        int pos = offset;
+        int i = 0;
+
+        // ASCII fast path until the first character that needs more than one byte
+        while (i < length)
+        {
+            char c = value.charAt(i);
+            if (c == 0 || c >= 0x80) break;
+            dst[pos++] = (byte) c;
+            i++;
+        }
+
+        for (; i < length; i++)
+        {
+            char c = value.charAt(i);
+            if (c != 0 && c < 0x80)
+            {
+                dst[pos++] = (byte) c;
+            } else if (c < 0x800)
+            {
+                dst[pos++] = (byte) (0xC0 | (c >> 6));
+                dst[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else
+            {
+                dst[pos++] = (byte) (0xE0 | (c >> 12));
+                dst[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Returns how many bytes of a malformed sequence to replace: the lead byte plus the continuation bytes
+     * following it, but no more than a sequence with this lead byte would take.
+     */
+    private static int malformedLength(byte[] bytes, int start, int end)
+    {
+        int b = bytes[start] & 0xFF;
+        int size;
+        if ((b & 0xE0) == 0xC0) size = 2;
+        else if ((b & 0xF0) == 0xE0) size = 3;
+        else if ((b & 0xF8) == 0xF0) size = 4;
+        else return 1;
+
+        int skipped = 1;
+        while (skipped < size && start + skipped < end && (bytes[start + skipped] & 0xC0) == 0x80)
+        {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    private static int continuation(byte[] bytes, int start, int index, int end) throws UTFDataFormatException
+    {
+        int position = start + index;
+        if (position >= end || (bytes[position] & 0xC0) != 0x80)
+        {
+            throw new UTFDataFormatException("Malformed input: partial character at end or invalid continuation byte");
+        }
+        return bytes[position] & 0x3F;
+    }
+}
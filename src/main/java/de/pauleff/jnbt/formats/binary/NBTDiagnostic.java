@@ -0,0 +1,82 @@
+package de.pauleff.jnbt.formats.binary;
+
+/**
+ * A problem found while reading a corrupted file in tolerant mode, see {@link NBTReader#readTolerant()}.
+ * Records where in the uncompressed data the problem was found and which tag was being read.
+ *
+ * @author Paul Ferlitz
+ */
+public final class NBTDiagnostic
+{
+    private final long offset;
+    private final int depth;
+    private final String tagName;
+    private final int tagType;
+    private final String message;
+
+    NBTDiagnostic(long offset, int depth, String tagName, int tagType, String message)
+    {
+        this.offset = offset;
+        this.depth = depth;
+        this.tagName = tagName;
+        this.tagType = tagType;
+        this.message = message;
+    }
+
+    /**
+     * Returns the byte offset in the uncompressed data at which the problem was detected.
+     *
+     * @return The byte offset
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Returns the nesting depth of the affected tag.
+     *
+     * @return The depth, 0 for the root compound
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Returns the name of the affected tag.
+     *
+     * @return The tag name, empty for list elements or if the name couldn't be read
+     */
+    public String getTagName()
+    {
+        return tagName;
+    }
+
+    /**
+     * Returns the type of the affected tag.
+     *
+     * @return The tag type ID, or -1 if unknown
+     */
+    public int getTagType()
+    {
+        return tagType;
+    }
+
+    /**
+     * Returns a description of the problem and how it was handled.
+     *
+     * @return The problem description
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s [Position: %d bytes, Depth: %d, Tag: '%s', Type: %d]",
+                message, offset, depth, tagName, tagType);
+    }
+}
@@ -1,7 +1,16 @@
 package de.pauleff.jnbt.formats.binary;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -14,8 +23,42 @@ import java.util.zip.InflaterInputStream;
  */
 public class NBTFileHandler
 {
+    /**
+     * Size of the read buffer placed between the file and the decompressor.
+     * The JDK default of 512 bytes would otherwise turn every refill of the inflater into its own system call.
+     */
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    private static volatile NBTIOListener listener = NBTIOListener.NONE;
+
+    /**
+     * Installs the listener notified about every file opened through this class.
+     *
+     * @param listener The listener, {@link NBTIOListener#NONE} to turn notifications off
+     * @throws IllegalArgumentException If the listener is {@code null}
+     */
+    public static void setListener(NBTIOListener listener)
+    {
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("Listener cannot be null, use NBTIOListener.NONE instead");
+        }
+        NBTFileHandler.listener = listener;
+    }
+
+    /**
+     * Returns the listener notified about every file opened through this class.
+     *
+     * @return The installed listener
+     */
+    public static NBTIOListener getListener()
+    {
+        return listener;
+    }
+
     /**
      * Method to fully load a NBT file and return it as a {@link DataInputStream}.
+     * The file is opened only once, its compression is detected from the buffered header before decoding it.
      *
      * @param file The target file.
      * @return The file as {@link DataInputStream}.
@@ -28,26 +71,93 @@ public class NBTFileHandler
             throw new FileNotFoundException(String.format("The file %s doesn't exist!", file.getPath()));
         }
 
-        InputStream fileStream;
+        NBTIOListener listener = NBTFileHandler.listener;
+        InputStream fileStream = new FileInputStream(file);
+        try
+        {
+            BufferedInputStream buffered = new BufferedInputStream(fileStream, FILE_BUFFER_SIZE);
+            Compression_Types compression = getCompressionType(buffered);
+            InputStream decoded = decompress(buffered, compression, file.getName());
+            if (listener != NBTIOListener.NONE)
+            {
+                listener.readOpened(file, compression);
+                decoded = new CountingInputStream(decoded, file, listener);
+            }
+            return new DataInputStream(decoded);
+        } catch (IOException | RuntimeException e)
+        {
+            fileStream.close();
+            throw e;
+        }
+    }
 
-        switch (getCompressionType(file))
+    /**
+     * Loads a complete NBT file into memory through a single open file.
+     * Uncompressed files are memory-mapped, compressed files are inflated into a heap buffer.
+     * At most {@code maxBytes + 1} bytes are inflated, so a decompression bomb is cut off early
+     * and then rejected by the byte limit of the reader.
+     *
+     * @param file     The NBT file to load
+     * @param maxBytes The byte budget of the reader that will decode the data
+     * @return A read-only buffer holding the uncompressed NBT data
+     * @throws FileNotFoundException If the file doesn't exist
+     * @throws IOException           If the file cannot be read or is larger than 2 GB
+     */
+    static ByteBuffer loadNBTToBuffer(File file, long maxBytes) throws IOException
+    {
+        if (Files.notExists(file.toPath()))
         {
-            case NONE:
-                System.out.printf("The file %s was uncompressed.%n", file.getName(), Compression_Types.GZIP.getName());
-                fileStream = new FileInputStream(file);
-                break;
-            case GZIP:
-                System.out.printf("The file %s was compressed with %s, decompressing...%n", file.getName(), Compression_Types.GZIP.getName());
-                fileStream = new GZIPInputStream(new FileInputStream(file));
-                break;
-            case ZLIB:
-                System.out.printf("The file %s was compressed with %s, decompressing...%n", file.getName(), Compression_Types.ZLIB.getName());
-                fileStream = new InflaterInputStream(new FileInputStream(file));
-                break;
-            default:
-                throw new IllegalArgumentException(String.format("The file %s is compressed with an unsupported format!", file.getName()));
+            throw new FileNotFoundException(String.format("The file %s doesn't exist!", file.getPath()));
+        }
+
+        NBTIOListener listener = NBTFileHandler.listener;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            byte[] header = new byte[2];
+            Compression_Types compression = detectCompression(header, channel.read(ByteBuffer.wrap(header), 0));
+            if (compression == Compression_Types.NONE)
+            {
+                long opened = System.nanoTime();
+                listener.readOpened(file, compression);
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE)
+                {
+                    throw new IOException(String.format("The file %s is too large to be memory-mapped (%d bytes)!",
+                            file.getName(), size));
+                }
+                // The mapping stays valid after the channel is closed
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                listener.readClosed(file, size, System.nanoTime() - opened);
+                return mapped;
+            }
+
+            InputStream decoded = decompress(new BufferedInputStream(Channels.newInputStream(channel), FILE_BUFFER_SIZE),
+                    compression, file.getName());
+            if (listener != NBTIOListener.NONE)
+            {
+                listener.readOpened(file, compression);
+                decoded = new CountingInputStream(decoded, file, listener);
+            }
+            try (InputStream in = decoded)
+            {
+                int cap = (int) Math.min(maxBytes, Integer.MAX_VALUE - 9) + 1;
+                return ByteBuffer.wrap(in.readNBytes(cap)).asReadOnlyBuffer();
+            }
         }
-        return new DataInputStream(fileStream);
+    }
+
+    /**
+     * Method to load NBT data from any stream, e.g. a HTTP body, and return it as a {@link DataInputStream}.
+     * The compression is detected from the first bytes of the stream, which are not lost by doing so.
+     *
+     * @param in The stream containing a NBT file, compressed or not. It is closed with the returned stream.
+     * @return The uncompressed data as {@link DataInputStream}.
+     * @throws IOException When encountering an error whilst reading the header of the stream.
+     */
+    public static DataInputStream loadNBTToReader(InputStream in) throws IOException
+    {
+        InputStream buffered = in.markSupported() ? in : new BufferedInputStream(in, FILE_BUFFER_SIZE);
+        return new DataInputStream(decompress(buffered, getCompressionType(buffered), "stream"));
     }
 
     /**
@@ -61,41 +171,149 @@ public class NBTFileHandler
      */
     public static DataOutputStream loadNBTToWriter(File file, Compression_Types compression) throws IOException
     {
-        if (Files.exists(file.toPath()))
+        return loadNBTToWriter(file, compression, WriterSettings.DEFAULT);
+    }
+
+    /**
+     * Method to create a {@link DataOutputStream} to later write a NBT file, with a tuned output pipeline.
+     * Tags are encoded into a {@link NBTOutputBuffer}, which hands full blocks to the compressor or file.
+     * If the file already exists, a backup will be created as configured by the settings.
+     * For atomic saves the target file is only replaced once the returned stream is closed, and the backup is
+     * only created, or the backups rotated, once the target has been replaced.
+     *
+     * @param file        The target file.
+     * @param compression The compression type of the file.
+     * @param settings    The buffer sizes and compression level to use.
+     * @return The file as {@link DataOutputStream}.
+     * @throws IOException When encountering an error whilst reading the file to a {@link DataOutputStream}.
+     */
+    public static DataOutputStream loadNBTToWriter(File file, Compression_Types compression, WriterSettings settings) throws IOException
+    {
+        NBTIOListener listener = NBTFileHandler.listener;
+        if (!settings.isAtomicSave() && settings.getBackupMode() != WriterSettings.BackupMode.NONE && Files.exists(file.toPath()))
         {
-            File backupFile = new File(file.getPath() + ".bak");
             try
             {
-                Files.copy(file.toPath(), backupFile.toPath(),
-                        java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                System.out.printf("Created backup of file %s -> %s%n",
-                        file.getName(), backupFile.getName());
+                File backupFile = createBackup(file.toPath(), settings).toFile();
+                listener.backupCreated(file, backupFile);
             } catch (IOException e)
             {
                 throw new IOException("Failed to create backup file: " + e.getMessage(), e);
             }
         }
 
+        if (compression != Compression_Types.NONE && compression != Compression_Types.GZIP && compression != Compression_Types.ZLIB)
+        {
+            throw new IllegalArgumentException(String.format("The compression type %s is not supported!", compression));
+        }
+        AtomicFileOutputStream atomic = settings.isAtomicSave() ? new AtomicFileOutputStream(file, settings, listener) : null;
+        OutputStream out = atomic != null ? atomic : new FileOutputStream(file);
         OutputStream fileStream;
+        try
+        {
+            fileStream = compress(out, compression, settings);
+        } catch (IOException | RuntimeException e)
+        {
+            if (atomic != null)
+            {
+                atomic.discard();
+            }
+            out.close();
+            throw e;
+        }
+        if (listener != NBTIOListener.NONE)
+        {
+            listener.writeOpened(file, compression);
+            fileStream = new CountingOutputStream(fileStream, file, listener);
+        }
+        NBTOutputBuffer buffer = new NBTOutputBuffer(fileStream, settings.getBufferSize());
+        return new PendingOutputStream(buffer, atomic);
+    }
+
+    /**
+     * Copies the current version of a file before it is overwritten in place.
+     * Hard links aren't possible here, as writing into the target would change the linked backup too.
+     *
+     * @param target   The file about to be overwritten
+     * @param settings The backup mode and count
+     * @return The newest backup
+     * @throws IOException If the backup cannot be created
+     */
+    private static Path createBackup(Path target, WriterSettings settings) throws IOException
+    {
+        Path backup = rotateBackups(target, settings);
+        Files.copy(target, backup, StandardCopyOption.REPLACE_EXISTING);
+        return backup;
+    }
 
-        switch (compression)
+    /**
+     * Makes room for the newest backup of a file.
+     * For {@link WriterSettings.BackupMode#ROTATE} the oldest backup is deleted and the others are shifted by one.
+     *
+     * @param target   The file being backed up
+     * @param settings The backup mode and count
+     * @return Where the newest backup goes
+     * @throws IOException If a backup cannot be moved or deleted
+     */
+    private static Path rotateBackups(Path target, WriterSettings settings) throws IOException
+    {
+        String name = target.getFileName().toString();
+        if (settings.getBackupMode() != WriterSettings.BackupMode.ROTATE)
+        {
+            return target.resolveSibling(name + ".bak");
+        }
+        int count = settings.getBackupCount();
+        Files.deleteIfExists(target.resolveSibling(name + ".bak." + count));
+        for (int i = count - 1; i >= 1; i--)
         {
-            case NONE:
-                System.out.printf("Compression type for writing %s set to %s%n", file.getName(), Compression_Types.NONE.getName());
-                fileStream = new FileOutputStream(file);
-                break;
-            case GZIP:
-                System.out.printf("Compression type for writing %s set to %s%n", file.getName(), Compression_Types.GZIP.getName());
-                fileStream = new GZIPOutputStream(new FileOutputStream(file));
-                break;
-            case ZLIB:
-                System.out.printf("Compression type for writing %s set to %s%n", file.getName(), Compression_Types.ZLIB.getName());
-                fileStream = new DeflaterOutputStream(new FileOutputStream(file));
-                break;
-            default:
-                throw new IllegalArgumentException(String.format("The compression type %s is not supported!", compression));
+            Path older = target.resolveSibling(name + ".bak." + i);
+            if (Files.exists(older))
+            {
+                Files.move(older, target.resolveSibling(name + ".bak." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
         }
-        return new DataOutputStream(fileStream);
+        return target.resolveSibling(name + ".bak.1");
+    }
+
+    /**
+     * Wraps a stream into the compressor for the given compression, configured with the given settings.
+     * A deflater passed in isn't released by {@link DeflaterOutputStream#close()}, so the ZLIB stream ends it itself.
+     *
+     * @param out         The stream receiving the compressed data
+     * @param compression The compression to apply
+     * @param settings    The compressor buffer size and compression level
+     * @return The stream to write uncompressed data to
+     * @throws IOException If the compressed header cannot be written
+     */
+    private static OutputStream compress(OutputStream out, Compression_Types compression, WriterSettings settings) throws IOException
+    {
+        int size = settings.getDeflaterBufferSize();
+        return switch (compression)
+        {
+            case NONE -> out;
+            case GZIP -> new GZIPOutputStream(out, size)
+            {
+                {
+                    def.setLevel(settings.getCompressionLevel());
+                }
+            };
+            case ZLIB -> new DeflaterOutputStream(out, new Deflater(settings.getCompressionLevel()), size)
+            {
+                @Override
+                public void close() throws IOException
+                {
+                    try
+                    {
+                        super.close();
+                    } finally
+                    {
+                        def.end();
+                    }
+                }
+            };
+            case null, default ->
+                    throw new IllegalArgumentException(String.format("The compression type %s is not supported!", compression));
+        };
     }
 
     /**
@@ -106,74 +324,412 @@ public class NBTFileHandler
      */
     public static Compression_Types getCompressionType(File file)
     {
-        if (isGzipped(file)) return Compression_Types.GZIP;
-        else if (isZlibed(file)) return Compression_Types.ZLIB;
-        else if (isLZ4ed(file)) return Compression_Types.LZ4;
-        else return Compression_Types.NONE;
+        try (InputStream in = new FileInputStream(file))
+        {
+            byte[] header = new byte[2];
+            return detectCompression(header, in.readNBytes(header, 0, header.length));
+        } catch (IOException e)
+        {
+            // Report the exception but don't fail compression detection
+            listener.compressionCheckFailed(file, e);
+            return Compression_Types.NONE;
+        }
     }
 
     /**
-     * Checks if a file was compressed with GZIP by examining magic bytes.
+     * Method to get the compression type of a stream by peeking at its magic bytes.
+     * The stream is reset afterwards, so the detected data can be decoded from the same stream.
      *
-     * @param file The target file to check
-     * @return {@code true} if the file has GZIP magic bytes, {@code false} otherwise
+     * @param in The target stream, which must support {@link InputStream#mark(int)}.
+     * @return The compression type of the stream.
+     * @throws IOException              When encountering an error whilst reading the header.
+     * @throws IllegalArgumentException If the stream doesn't support mark and reset.
      */
-    private static boolean isGzipped(File file)
+    public static Compression_Types getCompressionType(InputStream in) throws IOException
     {
-        try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+        if (!in.markSupported())
         {
-            if (raf.length() < 2) return false;
-            int magic = raf.read() & 0xff | (raf.read() << 8) & 0xff00;
-            return magic == GZIPInputStream.GZIP_MAGIC;
-        } catch (IOException e)
-        {
-            // Log the exception but don't fail compression detection
-            System.err.printf("Warning: Could not check GZIP magic for file %s: %s%n",
-                    file.getName(), e.getMessage());
-            return false;
+            throw new IllegalArgumentException("Compression detection requires a stream supporting mark and reset");
         }
+        byte[] header = new byte[2];
+        in.mark(header.length);
+        int length = in.readNBytes(header, 0, header.length);
+        in.reset();
+        return detectCompression(header, length);
+    }
+
+    /**
+     * Detects the compression from the magic bytes at the start of the data.
+     * LZ4 isn't detected, as it cannot be decoded anyway.
+     *
+     * @param header The first bytes of the data
+     * @param length The number of bytes available in the header
+     * @return The compression type of the data
+     */
+    private static Compression_Types detectCompression(byte[] header, int length)
+    {
+        if (length < 2) return Compression_Types.NONE;
+
+        int magic = header[0] & 0xff | (header[1] << 8) & 0xff00;
+        if (magic == GZIPInputStream.GZIP_MAGIC) return Compression_Types.GZIP;
+
+        // Check zlib header: first two bytes form a 16-bit value that must be divisible by 31
+        int headerValue = ((header[0] & 0xFF) << 8) | (header[1] & 0xFF);
+        int compressionMethod = header[0] & 0x0F;
+        if (headerValue % 31 == 0 && compressionMethod == 8) return Compression_Types.ZLIB;
+
+        return Compression_Types.NONE;
     }
 
     /**
-     * Checks if a file was compressed with ZLIB by examining magic bytes.
+     * Wraps a stream into the decompressor matching its compression.
      *
-     * @param file The target file to check
-     * @return {@code true} if the file has ZLIB magic bytes, {@code false} otherwise
+     * @param in          The buffered stream positioned at the start of the data
+     * @param compression The detected compression
+     * @param source      The name of the source, for the error message
+     * @return The stream of uncompressed data
+     * @throws IOException If the compressed header is invalid
      */
-    private static boolean isZlibed(File file)
+    private static InputStream decompress(InputStream in, Compression_Types compression, String source) throws IOException
     {
-        try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+        return switch (compression)
         {
-            if (raf.length() < 2) return false;
+            case NONE -> in;
+            case GZIP -> new GZIPInputStream(in, FILE_BUFFER_SIZE);
+            case ZLIB -> new InflaterInputStream(in);
+            case null, default ->
+                    throw new IllegalArgumentException(String.format("The file %s is compressed with an unsupported format!", source));
+        };
+    }
 
-            byte[] header = new byte[2];
-            raf.readFully(header);
+    /**
+     * Writes to a temporary file next to the target and moves it over the target once closed.
+     * The data is forced to disk before the move, so a crash leaves either the old or the complete new file.
+     * A discarded stream deletes the temporary file instead, leaving the target and its backups untouched.
+     *
+     * <p>The previous version is linked or copied to a staging file just before the move and only takes its place
+     * among the backups once the move succeeded, so a failed save never rotates or deletes a backup.</p>
+     */
+    private static final class AtomicFileOutputStream extends OutputStream
+    {
+        private final File file;
+        private final Path target;
+        private final Path temp;
+        private final Path stagedBackup;
+        private final WriterSettings settings;
+        private final NBTIOListener listener;
+        private final FileChannel channel;
+        private final byte[] single = new byte[1];
+        private boolean discarded;
+        private boolean closed;
+
+        private AtomicFileOutputStream(File file, WriterSettings settings, NBTIOListener listener) throws IOException
+        {
+            this.file = file;
+            this.target = file.toPath().toAbsolutePath();
+            String id = String.format(".%s.%d-%d", target.getFileName(), Thread.currentThread().threadId(), System.nanoTime());
+            this.temp = target.resolveSibling(id + ".tmp");
+            this.stagedBackup = target.resolveSibling(id + ".bak.tmp");
+            this.settings = settings;
+            this.listener = listener;
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
 
-            // Check zlib header: first two bytes form a 16-bit value that must be divisible by 31
-            int headerValue = ((header[0] & 0xFF) << 8) | (header[1] & 0xFF);
+        @Override
+        public void write(int b) throws IOException
+        {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
 
-            // Verify it's a valid zlib header
-            if (headerValue % 31 != 0)
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if (discarded)
+            {
+                return;
+            }
+            try
+            {
+                ByteBuffer data = ByteBuffer.wrap(b, off, len);
+                while (data.hasRemaining())
+                {
+                    channel.write(data);
+                }
+            } catch (IOException e)
+            {
+                discarded = true;
+                throw e;
+            }
+        }
+
+        /**
+         * Marks the written data as incomplete, so closing deletes it instead of replacing the target.
+         */
+        private void discard()
+        {
+            discarded = true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            boolean committed = false;
+            try
+            {
+                if (!discarded)
+                {
+                    channel.force(true);
+                    channel.close();
+                    boolean backup = stageBackup();
+                    try
+                    {
+                        move();
+                    } catch (IOException e)
+                    {
+                        if (backup)
+                        {
+                            Files.deleteIfExists(stagedBackup);
+                        }
+                        throw e;
+                    }
+                    committed = true;
+                    if (backup)
+                    {
+                        commitBackup();
+                    }
+                }
+            } finally
+            {
+                if (!committed)
+                {
+                    channel.close();
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+
+        /**
+         * Keeps the version about to be replaced in the staging file, hard-linked unless backups are copied.
+         *
+         * @return {@code true} if a backup was staged, {@code false} if there is nothing to back up
+         */
+        private boolean stageBackup() throws IOException
+        {
+            WriterSettings.BackupMode mode = settings.getBackupMode();
+            if (mode == WriterSettings.BackupMode.NONE || Files.notExists(target))
             {
                 return false;
             }
+            try
+            {
+                if (mode != WriterSettings.BackupMode.COPY)
+                {
+                    try
+                    {
+                        Files.createLink(stagedBackup, target);
+                        return true;
+                    } catch (UnsupportedOperationException | FileSystemException e)
+                    {
+                        // No hard links on this file system, fall back to a copy
+                    }
+                }
+                Files.copy(target, stagedBackup);
+                return true;
+            } catch (IOException e)
+            {
+                throw new IOException("Failed to create backup file: " + e.getMessage(), e);
+            }
+        }
 
-            int compressionMethod = header[0] & 0x0F;
-            return compressionMethod == 8;
-        } catch (IOException e)
+        /**
+         * Moves the staged backup into place once the target has been replaced, rotating older backups first.
+         */
+        private void commitBackup() throws IOException
+        {
+            try
+            {
+                Path backup = rotateBackups(target, settings);
+                Files.move(stagedBackup, backup, StandardCopyOption.REPLACE_EXISTING);
+                listener.backupCreated(file, backup.toFile());
+            } catch (IOException e)
+            {
+                Files.deleteIfExists(stagedBackup);
+                throw new IOException("Failed to create backup file: " + e.getMessage(), e);
+            }
+        }
+
+        private void move() throws IOException
         {
-            return false;
+            try
+            {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            // Persist the rename itself, not supported on every platform
+            try (FileChannel directory = FileChannel.open(target.getParent(), StandardOpenOption.READ))
+            {
+                directory.force(true);
+            } catch (IOException e)
+            {
+                // The file contents are on disk already
+            }
         }
     }
 
     /**
-     * Method to check if a file was compressed with LZ4.
-     *
-     * @param file The target file.
-     * @return {@code True} if the file was compressed with LZ4.
+     * Stream returned for file writes, so writers can encode straight into its buffer
+     * and discard the temporary file of an atomic save if encoding fails.
      */
-    private static boolean isLZ4ed(File file)
+    static final class PendingOutputStream extends DataOutputStream
     {
-        return false;
+        private final NBTOutputBuffer buffer;
+        private final AtomicFileOutputStream file; // null when saving in place
+
+        private PendingOutputStream(NBTOutputBuffer buffer, AtomicFileOutputStream file)
+        {
+            super(buffer);
+            this.buffer = buffer;
+            this.file = file;
+        }
+
+        /**
+         * Returns the buffer in front of the compressor or file.
+         */
+        NBTOutputBuffer buffer()
+        {
+            return buffer;
+        }
+
+        /**
+         * Returns whether the target file is only replaced once this stream is closed.
+         */
+        boolean isAtomic()
+        {
+            return file != null;
+        }
+
+        /**
+         * Drops everything written so far, the target file stays as it is once this stream is closed.
+         * Has no effect when saving in place, the target has been overwritten already.
+         */
+        void discard()
+        {
+            if (file != null)
+            {
+                file.discard();
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read from a file and reports them to the listener once the stream is closed.
+     */
+    private static final class CountingInputStream extends FilterInputStream
+    {
+        private final File file;
+        private final NBTIOListener listener;
+        private final long opened = System.nanoTime();
+        private long bytes;
+        private boolean closed;
+
+        private CountingInputStream(InputStream in, File file, NBTIOListener listener)
+        {
+            super(in);
+            this.file = file;
+            this.listener = listener;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = in.read();
+            if (b >= 0) bytes++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int n = in.read(b, off, len);
+            if (n > 0) bytes += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long skipped = in.skip(n);
+            bytes += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+            if (!closed)
+            {
+                closed = true;
+                listener.readClosed(file, bytes, System.nanoTime() - opened);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes written to a file and reports them to the listener once the stream is closed.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream
+    {
+        private final File file;
+        private final NBTIOListener listener;
+        private final long opened = System.nanoTime();
+        private long bytes;
+        private boolean closed;
+
+        private CountingOutputStream(OutputStream out, File file, NBTIOListener listener)
+        {
+            super(out);
+            this.file = file;
+            this.listener = listener;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            bytes += len;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            try
+            {
+                out.close();
+            } finally
+            {
+                listener.writeClosed(file, bytes, System.nanoTime() - opened);
+            }
+        }
     }
 }
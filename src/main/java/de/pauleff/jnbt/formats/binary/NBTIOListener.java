@@ -0,0 +1,147 @@
+package de.pauleff.jnbt.formats.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+
+/**
+ * Receives events about the files opened through {@link NBTFileHandler}, e.g. to collect metrics or to log them.
+ * All methods do nothing by default, so implementations only override the events they are interested in.
+ * A listener is installed via {@link NBTFileHandler#setListener(NBTIOListener)} and may be called from any thread.
+ *
+ * <p>The closing events carry the number of uncompressed bytes that passed through the stream and the time
+ * since it was opened. Counting them requires wrapping the stream, which is only done while a listener
+ * other than {@link #NONE} is installed.</p>
+ *
+ * <pre>{@code
+ * NBTFileHandler.setListener(new NBTIOListener()
+ * {
+ *     public void readClosed(File file, long bytes, long nanos)
+ *     {
+ *         readTimer.record(nanos, TimeUnit.NANOSECONDS);
+ *     }
+ * });
+ * }</pre>
+ *
+ * @author Paul Ferlitz
+ */
+public interface NBTIOListener
+{
+    /**
+     * Listener that ignores all events. This is the default.
+     */
+    NBTIOListener NONE = new NBTIOListener()
+    {
+    };
+
+    /**
+     * Returns a listener that logs every event at {@link Level#DEBUG} to the {@link System.Logger} named
+     * {@code de.pauleff.jnbt}, which can be routed to any logging framework.
+     *
+     * @return The logging listener
+     */
+    static NBTIOListener logging()
+    {
+        System.Logger logger = System.getLogger("de.pauleff.jnbt");
+        return new NBTIOListener()
+        {
+            @Override
+            public void readOpened(File file, Compression_Types compression)
+            {
+                logger.log(Level.DEBUG, () -> String.format("Reading %s (%s)", file.getName(), compression.getName()));
+            }
+
+            @Override
+            public void readClosed(File file, long bytes, long nanos)
+            {
+                logger.log(Level.DEBUG, () -> String.format("Read %d bytes from %s in %.3f ms", bytes, file.getName(), nanos / 1e6));
+            }
+
+            @Override
+            public void writeOpened(File file, Compression_Types compression)
+            {
+                logger.log(Level.DEBUG, () -> String.format("Writing %s (%s)", file.getName(), compression.getName()));
+            }
+
+            @Override
+            public void writeClosed(File file, long bytes, long nanos)
+            {
+                logger.log(Level.DEBUG, () -> String.format("Wrote %d bytes to %s in %.3f ms", bytes, file.getName(), nanos / 1e6));
+            }
+
+            @Override
+            public void backupCreated(File file, File backup)
+            {
+                logger.log(Level.DEBUG, () -> String.format("Created backup of file %s -> %s", file.getName(), backup.getName()));
+            }
+
+            @Override
+            public void compressionCheckFailed(File file, IOException e)
+            {
+                logger.log(Level.WARNING, () -> String.format("Could not check the compression of file %s", file.getName()), e);
+            }
+        };
+    }
+
+    /**
+     * Called when a file has been opened for reading.
+     *
+     * @param file        The file
+     * @param compression The detected compression of the file
+     */
+    default void readOpened(File file, Compression_Types compression)
+    {
+    }
+
+    /**
+     * Called when a stream returned by {@link NBTFileHandler#loadNBTToReader(File)} is closed.
+     *
+     * @param file  The file
+     * @param bytes The number of uncompressed bytes read
+     * @param nanos The time between opening and closing the stream in nanoseconds
+     */
+    default void readClosed(File file, long bytes, long nanos)
+    {
+    }
+
+    /**
+     * Called when a file has been opened for writing.
+     *
+     * @param file        The file
+     * @param compression The compression the file is written with
+     */
+    default void writeOpened(File file, Compression_Types compression)
+    {
+    }
+
+    /**
+     * Called when a stream returned by {@link NBTFileHandler#loadNBTToWriter(File, Compression_Types)} is closed.
+     *
+     * @param file  The file
+     * @param bytes The number of uncompressed bytes written
+     * @param nanos The time between opening and closing the stream in nanoseconds
+     */
+    default void writeClosed(File file, long bytes, long nanos)
+    {
+    }
+
+    /**
+     * Called when a backup of a file has been created before it is overwritten.
+     *
+     * @param file   The file about to be overwritten
+     * @param backup The backup copy
+     */
+    default void backupCreated(File file, File backup)
+    {
+    }
+
+    /**
+     * Called when the compression of a file could not be checked, in which case it is treated as uncompressed.
+     *
+     * @param file The file
+     * @param e    The error that occurred
+     */
+    default void compressionCheckFailed(File file, IOException e)
+    {
+    }
+}
@@ -0,0 +1,484 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.core.Tag;
+import de.pauleff.jnbt.util.NBTTags;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Offset index for random access into large uncompressed NBT files.
+ * The index records where every compound and list down to a configurable depth starts and how many bytes it spans.
+ * A single subtree can then be read by seeking straight to it instead of parsing the file from the beginning.
+ *
+ * <p>Paths are dot-separated and relative to the root compound, list elements are addressed by their index,
+ * e.g. {@code "Data.Player"} or {@code "Entities[3].Pos"}. Names containing {@code '.'}, {@code '['}, {@code ']'}
+ * or {@code '\\'} are escaped with a backslash, see {@link #escapeName(String)}.</p>
+ *
+ * <p>An index can be stored as a sidecar file next to the NBT file. It remembers the size, modification time and
+ * CRC-32C checksum of the file it was built for, plus a checksum of every indexed subtree, and is rebuilt by
+ * {@link #loadOrBuild(File, int)} once the file's content has changed. {@link #read(File, String)} verifies
+ * the checksum of the bytes it seeks to, so a rewrite that keeps size and modification time is caught as well.</p>
+ *
+ * <pre>{@code
+ * NBTIndex index = NBTIndex.loadOrBuild(file, 2);
+ * Tag<?> player = index.read(file, "Data.Player");
+ * }</pre>
+ *
+ * @author Paul Ferlitz
+ */
+public class NBTIndex
+{
+    /**
+     * File name suffix of sidecar index files.
+     */
+    public static final String SIDECAR_SUFFIX = ".idx";
+    private static final int MAGIC = 0x4E424958; // "NBIX"
+    private static final int VERSION = 2;
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+
+    private final long sourceSize;
+    private final long sourceModified;
+    private final long sourceChecksum;
+    private final int maxDepth;
+    private final Map<String, Entry> entries;
+
+    private NBTIndex(long sourceSize, long sourceModified, long sourceChecksum, int maxDepth, Map<String, Entry> entries)
+    {
+        this.sourceSize = sourceSize;
+        this.sourceModified = sourceModified;
+        this.sourceChecksum = sourceChecksum;
+        this.maxDepth = maxDepth;
+        this.entries = entries;
+    }
+
+    /**
+     * Builds an index by scanning an uncompressed NBT file once.
+     * Payloads below the indexed depth are skipped by length, no tags are created.
+     * The checksums of the indexed subtrees take one more pass over their bytes.
+     *
+     * @param nbtFile  The uncompressed NBT file to index
+     * @param maxDepth How deep compounds and lists are indexed, 1 for the direct children of the root compound
+     * @return The index of the file
+     * @throws FileNotFoundException    If the file doesn't exist
+     * @throws IOException              If the file cannot be read, is corrupted or holds duplicate names
+     * @throws IllegalArgumentException If the file is compressed or the depth is below 1
+     */
+    public static NBTIndex build(File nbtFile, int maxDepth) throws IOException
+    {
+        if (maxDepth < 1)
+        {
+            throw new IllegalArgumentException("Index depth must be at least 1: " + maxDepth);
+        }
+        if (Files.notExists(nbtFile.toPath()))
+        {
+            throw new FileNotFoundException(String.format("The file %s doesn't exist!", nbtFile.getPath()));
+        }
+        Compression_Types compression = NBTFileHandler.getCompressionType(nbtFile);
+        if (compression != Compression_Types.NONE)
+        {
+            throw new IllegalArgumentException(String.format("The file %s is compressed with %s and cannot be indexed!",
+                    nbtFile.getName(), compression.getName()));
+        }
+
+        long size = nbtFile.length();
+        long modified = nbtFile.lastModified();
+        Map<String, Entry> entries;
+        long checksum;
+        try (CheckedInputStream in = new CheckedInputStream(Files.newInputStream(nbtFile.toPath()), new CRC32C()))
+        {
+            entries = scan(new PositionTrackingDataInputStream(in), maxDepth);
+            in.transferTo(OutputStream.nullOutputStream()); // Bytes after the root compound are checksummed too
+            checksum = in.getChecksum().getValue();
+        }
+        try (FileChannel channel = FileChannel.open(nbtFile.toPath(), StandardOpenOption.READ))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+            for (Entry entry : entries.values())
+            {
+                CRC32C crc = new CRC32C();
+                for (long position = entry.offset, end = entry.offset + entry.length; position < end; )
+                {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                    position += readFully(channel, buffer, position, entry.path);
+                    crc.update(buffer.flip());
+                }
+                entry.checksum = (int) crc.getValue();
+            }
+        }
+        return new NBTIndex(size, modified, checksum, maxDepth, entries);
+    }
+
+    /**
+     * Escapes a tag name for use in a path, so names containing path separators stay unambiguous.
+     * {@code '.'}, {@code '['}, {@code ']'} and {@code '\\'} are prefixed with a backslash.
+     *
+     * @param name The tag name
+     * @return The name as it appears in paths
+     */
+    public static String escapeName(String name)
+    {
+        StringBuilder escaped = null;
+        for (int i = 0; i < name.length(); i++)
+        {
+            char c = name.charAt(i);
+            if (c == '.' || c == '[' || c == ']' || c == '\\')
+            {
+                if (escaped == null)
+                {
+                    escaped = new StringBuilder(name.length() + 4).append(name, 0, i);
+                }
+                escaped.append('\\');
+            }
+            if (escaped != null)
+            {
+                escaped.append(c);
+            }
+        }
+        return escaped == null ? name : escaped.toString();
+    }
+
+    /**
+     * Loads the sidecar index of a file if it is up to date, otherwise builds and stores a new one.
+     *
+     * @param nbtFile  The uncompressed NBT file
+     * @param maxDepth How deep compounds and lists have to be indexed at least
+     * @return An up to date index of the file
+     * @throws IOException If the file cannot be indexed or the sidecar cannot be written
+     */
+    public static NBTIndex loadOrBuild(File nbtFile, int maxDepth) throws IOException
+    {
+        File sidecar = sidecarFile(nbtFile);
+        if (sidecar.isFile())
+        {
+            try
+            {
+                NBTIndex index = load(sidecar);
+                if (index.maxDepth >= maxDepth && !index.isStale(nbtFile))
+                {
+                    return index;
+                }
+            } catch (IOException e)
+            {
+                // Unreadable sidecar, rebuild it below
+            }
+        }
+        NBTIndex index = build(nbtFile, maxDepth);
+        index.save(sidecar);
+        return index;
+    }
+
+    /**
+     * Returns the sidecar file an index of the given file is stored in.
+     *
+     * @param nbtFile The indexed NBT file
+     * @return The file next to it with {@link #SIDECAR_SUFFIX} appended
+     */
+    public static File sidecarFile(File nbtFile)
+    {
+        return new File(nbtFile.getPath() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Loads an index from a file written by {@link #save(File)}.
+     *
+     * @param indexFile The index file
+     * @return The loaded index
+     * @throws IOException If the file cannot be read or isn't an index
+     */
+    public static NBTIndex load(File indexFile) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile.toPath()))))
+        {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION)
+            {
+                throw new IOException(String.format("The file %s is not a supported NBT index!", indexFile.getName()));
+            }
+            long size = in.readLong();
+            long modified = in.readLong();
+            long checksum = in.readLong();
+            int maxDepth = in.readInt();
+            int count = in.readInt();
+            Map<String, Entry> entries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++)
+            {
+                Entry entry = new Entry(in.readUTF(), in.readUTF(), in.readByte(), in.readLong());
+                entry.length = in.readLong();
+                entry.checksum = in.readInt();
+                entries.put(entry.path, entry);
+            }
+            return new NBTIndex(size, modified, checksum, maxDepth, entries);
+        }
+    }
+
+    /**
+     * Stores this index, usually in the {@link #sidecarFile(File)} of the indexed file.
+     *
+     * @param indexFile The file to write the index to
+     * @throws IOException If the file cannot be written
+     */
+    public void save(File indexFile) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile.toPath()))))
+        {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(sourceSize);
+            out.writeLong(sourceModified);
+            out.writeLong(sourceChecksum);
+            out.writeInt(maxDepth);
+            out.writeInt(entries.size());
+            for (Entry entry : entries.values())
+            {
+                out.writeUTF(entry.path);
+                out.writeUTF(entry.name);
+                out.writeByte(entry.type);
+                out.writeLong(entry.offset);
+                out.writeLong(entry.length);
+                out.writeInt(entry.checksum);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the file has changed since this index was built.
+     * A different size or modification time is enough, otherwise the file is read once to compare its checksum,
+     * which is much cheaper than parsing it but not free for large files.
+     *
+     * @param nbtFile The indexed NBT file
+     * @return {@code true} if the index no longer matches the file
+     * @throws IOException If the file cannot be read
+     */
+    public boolean isStale(File nbtFile) throws IOException
+    {
+        if (nbtFile.length() != sourceSize || nbtFile.lastModified() != sourceModified)
+        {
+            return true;
+        }
+        try (CheckedInputStream in = new CheckedInputStream(Files.newInputStream(nbtFile.toPath()), new CRC32C()))
+        {
+            in.transferTo(OutputStream.nullOutputStream());
+            return in.getChecksum().getValue() != sourceChecksum;
+        }
+    }
+
+    /**
+     * Returns the paths of all indexed compounds and lists, in file order.
+     *
+     * @return The indexed paths
+     */
+    public Set<String> getPaths()
+    {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Returns whether a path is indexed.
+     *
+     * @param path The path to look up
+     * @return {@code true} if {@link #read(File, String)} can seek to it
+     */
+    public boolean contains(String path)
+    {
+        return entries.containsKey(path);
+    }
+
+    /**
+     * Reads a single indexed compound or list by seeking straight to its bytes.
+     * Only the subtree itself is checked against its checksum, the rest of the file isn't read.
+     *
+     * @param nbtFile The indexed NBT file
+     * @param path    The path of the compound or list, with names escaped as by {@link #escapeName(String)}
+     * @return The decoded subtree, or {@code null} if the path isn't indexed
+     * @throws IOException If the index is stale or the subtree is corrupted
+     */
+    public Tag<?> read(File nbtFile, String path) throws IOException
+    {
+        Entry entry = entries.get(path);
+        if (entry == null)
+        {
+            return null;
+        }
+        if (nbtFile.length() != sourceSize || nbtFile.lastModified() != sourceModified)
+        {
+            throw outOfDate(nbtFile);
+        }
+        if (entry.length > Integer.MAX_VALUE)
+        {
+            throw new IOException(String.format("The tag %s is too large to be read at once (%d bytes)!", path, entry.length));
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) entry.length);
+        try (FileChannel channel = FileChannel.open(nbtFile.toPath(), StandardOpenOption.READ))
+        {
+            readFully(channel, buffer, entry.offset, path);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.flip());
+        if ((int) crc.getValue() != entry.checksum)
+        {
+            throw outOfDate(nbtFile);
+        }
+        return new NBTReader(buffer.rewind()).readPayload(entry.type, entry.name);
+    }
+
+    private static IOException outOfDate(File nbtFile)
+    {
+        return new IOException(String.format("The index of %s is out of date, the file has changed!", nbtFile.getName()));
+    }
+
+    /**
+     * Fills the buffer from the given file position.
+     *
+     * @return The number of bytes read
+     */
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position, String path) throws IOException
+    {
+        int start = buffer.position();
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position() - start) < 0)
+            {
+                throw new EOFException(String.format("Unexpected end of file while reading %s", path));
+            }
+        }
+        return buffer.position() - start;
+    }
+
+    /**
+     * Walks the file on an explicit stack, descending only into containers within the indexed depth.
+     */
+    private static Map<String, Entry> scan(PositionTrackingDataInputStream in, int maxDepth) throws IOException
+    {
+        int type = in.readByte();
+        if (type != NBTTags.Tag_Compound.getId())
+        {
+            throw new IOException(in.createContextualError(
+                    String.format("Root tag must be a compound but was type %d", type)));
+        }
+        in.readUTF(in.readUnsignedShort(), null);
+
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        Entry[] frames = new Entry[Math.min(maxDepth + 1, 64)];
+        int[] remaining = new int[frames.length];
+        int[] listTypes = new int[frames.length];
+        int[] nextIndex = new int[frames.length];
+        frames[0] = new Entry("", "", NBTTags.Tag_Compound.getId(), 0);
+        int top = 0;
+
+        while (top >= 0)
+        {
+            Entry frame = frames[top];
+            String path;
+            String name = "";
+            if (frame.type == NBTTags.Tag_Compound.getId())
+            {
+                type = in.readByte();
+                if (type == NBTTags.Tag_End.getId())
+                {
+                    frame.length = in.getBytesRead() - frame.offset;
+                    top--;
+                    continue;
+                }
+                name = in.readUTF(in.readUnsignedShort(), NBTNameCache.shared());
+                if (!isContainer(type) || top + 1 > maxDepth)
+                {
+                    // Leaves and containers below the indexed depth get no path, only their name as context
+                    in.setCurrentContext(top + 1, name, type);
+                    NBTStructure.skipPayload(in, type);
+                    continue;
+                }
+                path = frame.path.isEmpty() ? escapeName(name) : frame.path + "." + escapeName(name);
+            } else
+            {
+                // Only lists of indexed containers are walked element by element, see below
+                if (remaining[top] == 0)
+                {
+                    frame.length = in.getBytesRead() - frame.offset;
+                    top--;
+                    continue;
+                }
+                remaining[top]--;
+                type = listTypes[top];
+                path = frame.path + "[" + nextIndex[top]++ + "]";
+            }
+            in.setCurrentContext(top + 1, path, type);
+
+            Entry entry = new Entry(path, name, type, in.getBytesRead());
+            if (entries.putIfAbsent(path, entry) != null)
+            {
+                throw new IOException(in.createContextualError(String.format("Duplicate tag path %s", path)));
+            }
+            int listType = 0;
+            int length = 0;
+            if (type == NBTTags.Tag_List.getId())
+            {
+                listType = in.readByte();
+                length = NBTStructure.readListLength(in, listType);
+                if (!isContainer(listType) || top + 2 > maxDepth)
+                {
+                    // None of the elements is indexed, skip them in one go
+                    NBTStructure.skipListBody(in, listType, length);
+                    entry.length = in.getBytesRead() - entry.offset;
+                    continue;
+                }
+            }
+            if (++top == frames.length)
+            {
+                frames = Arrays.copyOf(frames, top * 2);
+                remaining = Arrays.copyOf(remaining, top * 2);
+                listTypes = Arrays.copyOf(listTypes, top * 2);
+                nextIndex = Arrays.copyOf(nextIndex, top * 2);
+            }
+            frames[top] = entry;
+            listTypes[top] = listType;
+            remaining[top] = length;
+            nextIndex[top] = 0;
+        }
+        return entries;
+    }
+
+    private static boolean isContainer(int type)
+    {
+        return type == NBTTags.Tag_Compound.getId() || type == NBTTags.Tag_List.getId();
+    }
+
+    /**
+     * Location of one indexed compound or list payload.
+     */
+    private static final class Entry
+    {
+        private final String path;
+        private final String name;
+        private final int type;
+        private final long offset;
+        private long length;
+        private int checksum;
+
+        private Entry(String path, String name, int type, long offset)
+        {
+            this.path = path;
+            this.name = name;
+            this.type = type;
+            this.offset = offset;
+        }
+    }
+}
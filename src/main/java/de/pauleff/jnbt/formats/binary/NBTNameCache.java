@@ -0,0 +1,129 @@
+package de.pauleff.jnbt.formats.binary;
+
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+
+/**
+ * Bounded cache that maps the raw encoded bytes of tag names to decoded {@link String} instances.
+ * Real-world files reuse a small set of names ("id", "Count", "Pos", ...), so looking names up by their bytes
+ * saves both the decoding work and the duplicate strings in every parsed tree.
+ *
+ * <p>The cache is a fixed-size, two-way associative table: each name hashes to a home slot and may also live in
+ * the neighbouring slot. A new name takes over its home slot and pushes the previous occupant into the neighbouring
+ * slot, evicting whatever was stored there. Entries are immutable, so one instance can safely be shared between
+ * readers on different threads without locking. Names longer than {@link #MAX_CACHED_LENGTH} bytes are never cached.</p>
+ *
+ * @author Paul Ferlitz
+ */
+public class NBTNameCache
+{
+    /**
+     * Longest encoded name in bytes that is put into the cache.
+     */
+    public static final int MAX_CACHED_LENGTH = 64;
+    private static final NBTNameCache SHARED = new NBTNameCache(4096);
+
+    private final Entry[] table;
+    private final int mask;
+
+    /**
+     * Creates a cache with the given number of slots.
+     *
+     * @param capacity The number of slots, rounded up to the next power of two (at least two)
+     * @throws IllegalArgumentException If the capacity is not positive
+     */
+    public NBTNameCache(int capacity)
+    {
+        if (capacity <= 0 || capacity > (1 << 30))
+        {
+            throw new IllegalArgumentException("Invalid name cache capacity: " + capacity);
+        }
+        int size = Math.max(Integer.highestOneBit(capacity), 2);
+        if (size < capacity) size <<= 1;
+        this.table = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns the cache shared by all readers that weren't given their own.
+     *
+     * @return The shared cache instance
+     */
+    public static NBTNameCache shared()
+    {
+        return SHARED;
+    }
+
+    /**
+     * Returns the name encoded in the given byte range, taking it from the cache if possible.
+     *
+     * @param bytes  The array holding the encoded name
+     * @param offset Start of the encoded name
+     * @param length Length of the encoded name in bytes
+     * @return The decoded name
+     * @throws UTFDataFormatException If the bytes are not valid modified UTF-8
+     */
+    public String decode(byte[] bytes, int offset, int length) throws UTFDataFormatException
+    {
+        if (length == 0) return "";
+        if (length > MAX_CACHED_LENGTH) return decodeUncached(bytes, offset, length);
+
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++)
+        {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask;
+
+        // Two-way lookup: the name may live in its home slot or in the neighbouring one
+        Entry home = table[slot];
+        if (home != null && home.matches(hash, bytes, offset, length)) return home.value;
+        Entry neighbour = table[slot ^ 1];
+        if (neighbour != null && neighbour.matches(hash, bytes, offset, length)) return neighbour.value;
+
+        String value = decodeUncached(bytes, offset, length);
+        Entry entry = new Entry(hash, Arrays.copyOfRange(bytes, offset, offset + length), value);
+        if (home == null)
+        {
+            table[slot] = entry;
+        } else
+        {
+            // Demote the previous occupant of the home slot, evicting whatever lived in the neighbouring slot
+            table[slot ^ 1] = home;
+            table[slot] = entry;
+        }
+        return value;
+    }
+
+    /**
+     * Removes all cached names.
+     */
+    public void clear()
+    {
+        Arrays.fill(table, null);
+    }
+
+    private static String decodeUncached(byte[] bytes, int offset, int length) throws UTFDataFormatException
+    {
+        return ModifiedUTF8.decode(bytes, offset, length);
+    }
+
+    private static final class Entry
+    {
+        private final int hash;
+        private final byte[] key;
+        private final String value;
+
+        private Entry(int hash, byte[] key, String value)
+        {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        private boolean matches(int otherHash, byte[] bytes, int offset, int length)
+        {
+            return hash == otherHash && Arrays.equals(key, 0, key.length, bytes, offset, offset + length);
+        }
+    }
+}
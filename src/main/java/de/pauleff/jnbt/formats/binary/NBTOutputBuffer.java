@@ -0,0 +1,138 @@
+package de.pauleff.jnbt.formats.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Output stream collecting small writes in a large byte buffer and handing them on in full blocks.
+ * Sits between the encoder and the compressor or file, so a single {@code writeInt} never turns into
+ * its own deflate call or system call. Unlike {@link java.io.BufferedOutputStream} the buffer isn't
+ * synchronized and can be reused for another target via {@link #reset(OutputStream)}.
+ * {@link NBTWriter} encodes straight into its array instead of writing through the stream methods.
+ *
+ * @author Paul Ferlitz
+ */
+public final class NBTOutputBuffer extends OutputStream
+{
+    private final byte[] buffer;
+    private OutputStream sink;
+    private int count;
+
+    /**
+     * Create a buffer writing to the given stream.
+     *
+     * @param sink The stream receiving the buffered blocks
+     * @param size The size of the buffer in bytes
+     * @throws IllegalArgumentException If the size isn't positive
+     */
+    public NBTOutputBuffer(OutputStream sink, int size)
+    {
+        if (size <= 0)
+        {
+            throw new IllegalArgumentException("Buffer size must be positive: " + size);
+        }
+        this.buffer = new byte[size];
+        this.sink = sink;
+    }
+
+    /**
+     * Points the buffer at a new target, keeping the allocated buffer.
+     * Data still buffered for the previous target is discarded, it should have been flushed or closed first.
+     *
+     * @param sink The stream receiving the buffered blocks
+     * @return This buffer for method chaining
+     */
+    public NBTOutputBuffer reset(OutputStream sink)
+    {
+        this.sink = sink;
+        this.count = 0;
+        return this;
+    }
+
+    /**
+     * Wraps the buffer for encoding into it directly, positioned after the bytes buffered so far.
+     * Bytes encoded into it are handed on by {@link #drain(ByteBuffer)}, not by the stream methods.
+     *
+     * @return A big-endian view of the whole buffer
+     */
+    ByteBuffer encodeBuffer()
+    {
+        return ByteBuffer.wrap(buffer).position(count);
+    }
+
+    /**
+     * Takes over the bytes encoded into the buffer returned by {@link #encodeBuffer()}, hands them on
+     * and clears the view for the next block.
+     *
+     * @param encoded The view returned by {@link #encodeBuffer()}
+     * @throws IOException If the target cannot be written
+     */
+    void drain(ByteBuffer encoded) throws IOException
+    {
+        count = encoded.position();
+        drain();
+        encoded.clear();
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        if (count == buffer.length)
+        {
+            drain();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        if (len >= buffer.length)
+        {
+            // Copying a block at least as large as the buffer would only add a copy
+            drain();
+            sink.write(b, off, len);
+            return;
+        }
+        if (len > buffer.length - count)
+        {
+            drain();
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        drain();
+        sink.flush();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            drain();
+        } finally
+        {
+            sink.close();
+        }
+    }
+
+    /**
+     * Hands the buffered bytes on to the target in one block.
+     *
+     * @throws IOException If the target cannot be written
+     */
+    private void drain() throws IOException
+    {
+        if (count > 0)
+        {
+            sink.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
@@ -5,21 +5,51 @@ import de.pauleff.jnbt.api.INBTReader;
 import de.pauleff.jnbt.core.*;
 import de.pauleff.jnbt.util.NBTTags;
 
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class for handling the parsing and formatting of a Java NBT file.
  *
+ * <p>A reader can be pointed at a new source via {@link #reset(File)} or {@link #reset(InputStream)} once a
+ * {@link #read()} is done. It keeps its read buffer, parse stack, compound size hints, name cache, limits and
+ * path selection, so one reader per worker thread can import any number of files without per-file setup.
+ * Readers are not thread-safe.</p>
+ *
+ * <p>Corrupted files can be salvaged with {@link #readTolerant()}, which returns whatever could be decoded
+ * together with a list of {@link NBTDiagnostic}s instead of failing on the first problem.</p>
+ *
  * @author Paul Ferlitz
  */
 public class NBTReader implements INBTReader
 {
+    private static final int MAX_SIZE_HINT = 1024;
+    private static final int SHARED_ELEMENT_BATCH = 1024;
+
     private final PositionTrackingDataInputStream stream;
+    private PathSelection selection;
+    private NBTNameCache nameCache = NBTNameCache.shared();
+    private ReaderLimits limits = ReaderLimits.DEFAULT;
+    private long elements;
+    private AtomicLong sharedElements; // Only set while decoding a slice of a parallel read
+    private Frame[] frames = new Frame[16];
+    private List<NBTDiagnostic> diagnostics; // Only set while reading tolerantly
+
+    /**
+     * Create a reader without a source, to be pointed at one via {@link #reset(File)} or {@link #reset(InputStream)}.
+     */
+    public NBTReader()
+    {
+        this.stream = new PositionTrackingDataInputStream(InputStream.nullInputStream());
+    }
 
     /**
      * Create a reader by passing it the target NBT file.
@@ -49,16 +79,113 @@ public class NBTReader implements INBTReader
         this.stream = new PositionTrackingDataInputStream(dis);
     }
 
+    /**
+     * Create a reader on top of an already prepared {@link PositionTrackingDataInputStream}.
+     *
+     * @param stream The position tracking stream containing a NBT file.
+     */
+    public NBTReader(PositionTrackingDataInputStream stream)
+    {
+        this.stream = stream;
+    }
+
+    /**
+     * Create a reader over uncompressed NBT data held in memory, decoding it in place without a read buffer.
+     * The buffer is read from its current position and is never modified.
+     *
+     * @param data The buffer holding the NBT data.
+     */
+    public NBTReader(ByteBuffer data)
+    {
+        this.stream = new PositionTrackingDataInputStream(data);
+    }
+
     /**
      * Converts a byte array into a position-tracking DataInputStream for NBT reading.
+     * The array is decoded in place, without copying or intermediate streams.
      *
      * @param chunkData The byte array to convert
      * @return A {@link PositionTrackingDataInputStream} for enhanced error reporting
      */
     public static PositionTrackingDataInputStream byteArrayToDataInputStream(byte[] chunkData)
     {
-        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(chunkData);
-        return new PositionTrackingDataInputStream(byteArrayInputStream);
+        return new PositionTrackingDataInputStream(ByteBuffer.wrap(chunkData));
+    }
+
+    /**
+     * Restricts the next {@link #read()} to the given tag paths.
+     * Paths are dot-separated and relative to the root compound, e.g. {@code "Data.Player.Pos"}, names are escaped
+     * as by {@link NBTIndex#escapeName(String)}. Selected tags are materialized with their complete subtree, every
+     * other entry is skipped by length without allocating tags. Paths can only descend through compounds,
+     * a selected list is read as a whole.
+     *
+     * @param paths The tag paths to read, or {@code null} to read the complete file again
+     * @return This reader for method chaining
+     * @throws IllegalArgumentException If a path is empty, has an empty segment, an invalid escape or a list index
+     */
+    public NBTReader select(Collection<String> paths)
+    {
+        this.selection = paths == null ? null : PathSelection.of(paths);
+        return this;
+    }
+
+    /**
+     * Sets the cache used to decode tag names.
+     * By default all readers share {@link NBTNameCache#shared()}, so equal names share one string instance.
+     *
+     * @param nameCache The cache to use, or {@code null} to decode every name individually
+     * @return This reader for method chaining
+     */
+    public NBTReader setNameCache(NBTNameCache nameCache)
+    {
+        this.nameCache = nameCache;
+        return this;
+    }
+
+    /**
+     * Sets the resource limits enforced by {@link #read()}.
+     * Input that nests too deep, declares oversized arrays or lists, or exceeds the byte or element budget
+     * is rejected with an {@link IOException} before the corresponding memory is allocated.
+     *
+     * @param limits The limits to enforce
+     * @return This reader for method chaining
+     * @throws IllegalArgumentException If the limits are {@code null}
+     */
+    public NBTReader setLimits(ReaderLimits limits)
+    {
+        if (limits == null)
+        {
+            throw new IllegalArgumentException("Reader limits cannot be null");
+        }
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Points the reader at a new NBT file, keeping all buffers and settings.
+     * The previous source is not closed, which {@link #read()} already takes care of.
+     *
+     * @param nbtFile The target NBT file
+     * @return This reader for method chaining
+     * @throws IOException If the file cannot be opened
+     */
+    public NBTReader reset(File nbtFile) throws IOException
+    {
+        stream.reset(NBTFileHandler.loadNBTToReader(nbtFile));
+        return this;
+    }
+
+    /**
+     * Points the reader at a new stream of uncompressed NBT data, keeping all buffers and settings.
+     * The previous source is not closed, which {@link #read()} already takes care of.
+     *
+     * @param in The stream containing a NBT file
+     * @return This reader for method chaining
+     */
+    public NBTReader reset(InputStream in)
+    {
+        stream.reset(in);
+        return this;
     }
 
     /**
@@ -82,11 +209,25 @@ public class NBTReader implements INBTReader
     {
         try
         {
-            Tag_Compound tag = (Tag_Compound) readNBTTag(0);
-            return tag;
+            elements = 0;
+            stream.setByteLimit(limits.getMaxTotalBytes());
+            int type = stream.readByte();
+            if (type == NBTTags.Tag_End.getId())
+            {
+                throw new IOException(stream.createContextualError(
+                        "Unexpected Tag_End at root level - NBT files must start with a compound tag"));
+            }
+            String name = readName();
+            stream.setCurrentContext(0, name, type);
+            if (type != NBTTags.Tag_Compound.getId())
+            {
+                throw new IOException(stream.createContextualError(
+                        String.format("Root tag must be a compound but was type %d", type)));
+            }
+            return (Tag_Compound) readTree(type, name, 0, selection);
         } catch (IOException e)
         {
-            throw e; // Re-throw IOException directly
+            throw withContext(e);
         } catch (Exception e)
         {
             throw new IOException("Failed to parse NBT data: " + e.getMessage(), e);
@@ -97,55 +238,280 @@ public class NBTReader implements INBTReader
     }
 
     /**
-     * Reads an entire NBT tag including its name header.
+     * Parses the NBT file like {@link #read()}, but salvages as much as possible instead of failing on corrupted data.
+     * Problems that can be stepped over are worked around and parsing continues:
+     * <ul>
+     *     <li>Malformed names and strings are decoded with {@code U+FFFD} replacing the broken sequences.</li>
+     *     <li>Arrays over {@link ReaderLimits#getMaxArrayLength()} and containers nested deeper than
+     *     {@link ReaderLimits#getMaxDepth()} are skipped by length and left out of the tree.</li>
+     * </ul>
+     * Anything else, e.g. truncated data or an unknown tag type, makes it impossible to find the next tag.
+     * Parsing then stops and every open list and compound is truncated after its last complete child.
+     * Each problem is reported as a {@link NBTDiagnostic}.
+     * This method automatically closes the reader when parsing is complete.
      *
-     * @param depth Current nesting depth for validation and error reporting
-     * @return The complete tag read from the stream
-     * @throws IOException If tag structure is invalid or stream is corrupted
+     * @return The salvaged tree and the problems found
      */
-    private Tag readNBTTag(int depth) throws IOException
+    public NBTSalvageResult readTolerant()
     {
+        diagnostics = new ArrayList<>();
         try
         {
-            int type = stream.readByte();
-            String name = "";
+            ICompoundTag root = null;
+            try
+            {
+                root = read();
+            } catch (IOException e)
+            {
+                report(e);
+            }
+            return new NBTSalvageResult(root, diagnostics);
+        } finally
+        {
+            diagnostics = null;
+        }
+    }
 
-            if (type != NBTTags.Tag_End.getId())
+    /**
+     * Parses uncompressed NBT data held in a buffer, decoding it in place without stream wrapping.
+     * On success the buffer's position is advanced past the root compound, so data following it,
+     * e.g. further packet fields, can be read next. The buffer's contents are never modified.
+     * Like {@link #reset(InputStream)}, this keeps all buffers and settings of the reader.
+     *
+     * @param data The buffer holding the NBT data, starting at its position
+     * @return The root {@link ICompoundTag} containing the complete NBT structure
+     * @throws IOException If the data is truncated, corrupted, or doesn't follow NBT specification
+     */
+    public ICompoundTag read(ByteBuffer data) throws IOException
+    {
+        stream.reset(data);
+        ICompoundTag root = read();
+        data.position(data.position() + (int) stream.getBytesRead());
+        return root;
+    }
+
+    /**
+     * Parses uncompressed NBT data from a slice of a byte array, decoding it in place without copying.
+     * Bytes after the root compound within the slice are ignored.
+     *
+     * @param data   The array holding the NBT data
+     * @param offset Start of the NBT data in the array
+     * @param length Number of bytes available from the offset
+     * @return The root {@link ICompoundTag} containing the complete NBT structure
+     * @throws IOException If the data is truncated, corrupted, or doesn't follow NBT specification
+     */
+    public ICompoundTag read(byte[] data, int offset, int length) throws IOException
+    {
+        stream.reset(ByteBuffer.wrap(data, offset, length));
+        return read();
+    }
+
+    /**
+     * Decodes a single payload whose type and name are already known, e.g. from an offset index.
+     * Unlike {@link #read()} this doesn't close the underlying stream.
+     *
+     * @param type The NBT type ID of the payload
+     * @param name The name to give the decoded tag
+     * @return The decoded tag
+     * @throws IOException If the payload is corrupted
+     */
+    Tag<?> readPayload(int type, String name) throws IOException
+    {
+        return readPayload(type, name, 1);
+    }
+
+    /**
+     * Decodes a single payload at the given depth, so {@link ReaderLimits#getMaxDepth()} applies as in a full read.
+     *
+     * @param type  The NBT type ID of the payload
+     * @param name  The name to give the decoded tag
+     * @param depth The depth of the tag in the complete tree
+     * @return The decoded tag
+     * @throws IOException If the payload is corrupted or exceeds the limits
+     */
+    Tag<?> readPayload(int type, String name, int depth) throws IOException
+    {
+        try
+        {
+            stream.setCurrentContext(depth, name, type);
+            return readTree(type, name, depth, null);
+        } catch (IOException e)
+        {
+            throw withContext(e);
+        }
+    }
+
+    /**
+     * Reads a tag payload including all nested children.
+     * Nesting is tracked on an explicit stack of {@link Frame}s instead of the call stack,
+     * so deeply nested input is bounded by {@link ReaderLimits#getMaxDepth()} rather than by the thread's stack size.
+     *
+     * @param type  The type of the NBT tag, which's payload should be read.
+     * @param name  The name of the NBT tag.
+     * @param depth The depth of the tag.
+     * @param node  Path selection for the children of a compound, or {@code null} to read everything.
+     * @return The complete read NBT tag, truncated after the first unrecoverable problem when reading tolerantly.
+     * @throws IOException When encountering a parsing error caused by the file (e.g. corrupted).
+     */
+    private Tag<?> readTree(int type, String name, int depth, PathSelection node) throws IOException
+    {
+        if (type != NBTTags.Tag_Compound.getId() && type != NBTTags.Tag_List.getId())
+        {
+            return readValue(type, name);
+        }
+
+        int top = 0;
+        Frame frame = openFrame(top, type, name, depth, node);
+        while (true)
+        {
+            try
             {
-                int nameLength = stream.readUnsignedShort();
-                if (nameLength < 0 || nameLength > 32767) // Reasonable limit for NBT names
+                int childType;
+                String childName = "";
+                boolean closed;
+                if (frame.list)
+                {
+                    closed = frame.remaining == 0;
+                    frame.remaining--;
+                    childType = frame.listType;
+                } else
                 {
-                    throw new IOException(stream.createContextualError(
-                            String.format("Invalid tag name length: %d", nameLength)));
+                    childType = stream.readByte();
+                    closed = childType == NBTTags.Tag_End.getId();
+                    if (!closed)
+                    {
+                        childName = readName();
+                    }
                 }
 
-                byte[] byteBuffer = new byte[nameLength];
-                stream.readFully(byteBuffer);
-                name = new String(byteBuffer, StandardCharsets.UTF_8);
+                if (closed)
+                {
+                    Tag<?> finished = frame.close();
+                    if (top == 0)
+                    {
+                        return finished;
+                    }
+                    frame = frames[--top];
+                    frame.children.add(finished);
+                    continue;
+                }
+
+                int childDepth = frame.depth + 1;
+                stream.setCurrentContext(childDepth, childName, childType);
+
+                PathSelection childNode = null;
+                if (frame.selection != null)
+                {
+                    childNode = frame.selection.child(childName);
+                    if (childNode == null)
+                    {
+                        NBTStructure.skipPayload(stream, childType);
+                        continue;
+                    }
+                    if (childNode.isLeaf() || childType != NBTTags.Tag_Compound.getId())
+                    {
+                        childNode = null;
+                    }
+                }
+
+                if (childType == NBTTags.Tag_Compound.getId() || childType == NBTTags.Tag_List.getId())
+                {
+                    Frame child = openFrame(top + 1, childType, childName, childDepth, childNode);
+                    if (child != null)
+                    {
+                        frame = child;
+                        top++;
+                    }
+                } else
+                {
+                    Tag<?> value = readValue(childType, childName);
+                    if (value != null)
+                    {
+                        frame.children.add(value);
+                    }
+                }
+            } catch (IOException e)
+            {
+                if (diagnostics == null)
+                {
+                    throw e;
+                }
+                report(e);
+                return truncate(top);
             }
+        }
+    }
 
-            stream.setCurrentContext(depth, name, type);
-            return readNBTPayload(type, name, depth);
-        } catch (IOException e)
+    /**
+     * Prepares the stack frame for a compound or list, reading the list header if needed.
+     *
+     * @param index The stack index of the frame
+     * @param type  The type of the container
+     * @param name  The name of the container
+     * @param depth The depth of the container
+     * @param node  Path selection for the children of a compound, or {@code null} to read everything
+     * @return The prepared frame, or {@code null} if the container was skipped when reading tolerantly
+     * @throws IOException If the maximum depth is exceeded or the list header is invalid
+     */
+    private Frame openFrame(int index, int type, String name, int depth, PathSelection node) throws IOException
+    {
+        if (depth > limits.getMaxDepth())
         {
-            if (e.getMessage().contains("[Position:"))
+            String message = String.format("Maximum nesting depth of %d exceeded", limits.getMaxDepth());
+            if (diagnostics == null || index == 0)
             {
-                throw e; // Already has context
+                throw new IOException(stream.createContextualError(message));
             }
-            throw new IOException(stream.createContextualError("Failed to read NBT tag: " + e.getMessage()), e);
+            NBTStructure.skipPayload(stream, type);
+            report(message + ", container skipped");
+            return null;
         }
+        countElement();
+        if (index == frames.length)
+        {
+            frames = Arrays.copyOf(frames, index * 2);
+        }
+        Frame frame = frames[index];
+        if (frame == null)
+        {
+            frame = new Frame();
+            frames[index] = frame;
+        }
+
+        frame.name = name;
+        frame.depth = depth;
+        frame.selection = node;
+        if (type == NBTTags.Tag_List.getId())
+        {
+            int listType = stream.readByte();
+            int listLength = NBTStructure.readListLength(stream, listType, limits);
+            if (listLength > limits.getMaxElements() - elements)
+            {
+                throw new IOException(stream.createContextualError(
+                        String.format("List of %d elements exceeds the limit of %d elements", listLength,
+                                limits.getMaxElements())));
+            }
+            frame.list = true;
+            frame.listType = listType;
+            frame.remaining = listLength;
+            frame.children = new ArrayList<>(Math.min(listLength, 1000)); // Pre-size reasonably
+        } else
+        {
+            frame.list = false;
+            frame.children = new ArrayList<>(frame.sizeHint);
+        }
+        return frame;
     }
 
     /**
-     * Method to only read a NBT tag's payload.
+     * Reads the payload of a tag that cannot contain other tags.
      *
-     * @param type  The type of the NBT tag, which's payload should be read.
-     * @param name  The name of the NBT tag.
-     * @param depth The current depth at which is beeing read.
-     * @return The complete read NBT tag.
+     * @param type The type of the NBT tag, which's payload should be read.
+     * @param name The name of the NBT tag.
+     * @return The complete read NBT tag, or {@code null} if an oversized array was skipped when reading tolerantly.
      * @throws IOException When encountering a parsing error caused by the file (e.g. corrupted).
      */
-    private Tag readNBTPayload(int type, String name, int depth) throws IOException
+    private Tag<?> readValue(int type, String name) throws IOException
     {
         NBTTags tagType = NBTTags.getById(type);
         if (tagType == null)
@@ -153,15 +519,11 @@ public class NBTReader implements INBTReader
             throw new IOException(stream.createContextualError(
                     String.format("Unknown tag type: %d", type)));
         }
+        countElement();
 
         switch (tagType)
         {
             case Tag_End:
-                if (depth == 0)
-                {
-                    throw new IOException(stream.createContextualError(
-                            "Unexpected Tag_End at root level - NBT files must start with a compound tag"));
-                }
                 return new Tag_End();
             case Tag_Byte:
                 return new Tag_Byte(name, stream.readByte());
@@ -176,72 +538,243 @@ public class NBTReader implements INBTReader
             case Tag_Double:
                 return new Tag_Double(name, stream.readDouble());
             case Tag_Byte_Array:
-                int arrayLength = stream.readInt();
-                if (arrayLength < 0 || arrayLength > 100_000_000) // 100MB limit
-                {
-                    throw new IOException(stream.createContextualError(
-                            String.format("Invalid byte array length: %d", arrayLength)));
-                }
+                int arrayLength = readArrayLength("byte array", Byte.BYTES);
+                if (arrayLength < 0) return null;
                 byte[] byteBuffer = new byte[arrayLength];
                 stream.readFully(byteBuffer);
                 return new Tag_Byte_Array(name, byteBuffer);
             case Tag_String:
-                arrayLength = stream.readUnsignedShort();
-                if (arrayLength > 65535) // Max string length in NBT
-                {
-                    throw new IOException(stream.createContextualError(
-                            String.format("Invalid string length: %d", arrayLength)));
-                }
-                byteBuffer = new byte[arrayLength];
-                stream.readFully(byteBuffer);
-                return new Tag_String(name, new String(byteBuffer, StandardCharsets.UTF_8));
-            case Tag_List:
-                int listType = stream.readByte();
-                if (NBTTags.getById(listType) == null && listType != 0) // 0 is valid for empty lists
-                {
-                    throw new IOException(stream.createContextualError(
-                            String.format("Invalid list element type: %d", listType)));
-                }
-                arrayLength = stream.readInt();
-                if (arrayLength < 0 || arrayLength > 10_000_000) // 10M elements max
-                {
-                    throw new IOException(stream.createContextualError(
-                            String.format("Invalid list length: %d", arrayLength)));
-                }
-                ArrayList<Tag<?>> tagList = new ArrayList<>(Math.min(arrayLength, 1000)); // Pre-size reasonably
-                for (int i = 0; i < arrayLength; i++)
-                {
-                    tagList.add(readNBTPayload(listType, "", depth + 1));
-                }
-                return new Tag_List(name, listType, tagList);
-            case Tag_Compound:
-                tagList = new ArrayList<>(16);
-                while (true)
-                {
-                    Tag tag = readNBTTag(depth + 1);
-                    if (tag.getId() == NBTTags.Tag_End.getId()) break;
-                    tagList.add(tag);
-                }
-                return new Tag_Compound(name, tagList);
+                return new Tag_String(name, readUTF(stream.readUnsignedShort(), null));
             case Tag_Int_Array:
-                arrayLength = stream.readInt();
+                arrayLength = readArrayLength("int array", Integer.BYTES);
+                if (arrayLength < 0) return null;
                 int[] intArray = new int[arrayLength];
-                for (int i = 0; i < arrayLength; i++)
-                {
-                    intArray[i] = stream.readInt();
-                }
+                stream.readInts(intArray);
                 return new Tag_Int_Array(name, intArray);
             case Tag_Long_Array:
-                arrayLength = stream.readInt();
+                arrayLength = readArrayLength("long array", Long.BYTES);
+                if (arrayLength < 0) return null;
                 long[] longArray = new long[arrayLength];
-                for (int i = 0; i < arrayLength; i++)
-                {
-                    longArray[i] = stream.readLong();
-                }
+                stream.readLongs(longArray);
                 return new Tag_Long_Array(name, longArray);
             case null:
             default:
                 throw new IllegalStateException("Unexpected value: " + type);
         }
     }
+
+    /**
+     * Reads the length prefix of an array and checks it against the limits before anything is allocated.
+     * List lengths are checked by {@link NBTStructure#readListLength(PositionTrackingDataInputStream, int, ReaderLimits)}.
+     *
+     * @param kind        What is being read, for the error message
+     * @param elementSize The encoded size of one element in bytes
+     * @return The validated length, or -1 if an oversized array was skipped when reading tolerantly
+     * @throws IOException If the length is negative or exceeds the limits
+     */
+    private int readArrayLength(String kind, int elementSize) throws IOException
+    {
+        int length = stream.readInt();
+        if (length < 0)
+        {
+            throw new IOException(stream.createContextualError(
+                    String.format("Invalid %s length: %d", kind, length)));
+        }
+        if (length > limits.getMaxArrayLength())
+        {
+            String message = String.format("Invalid %s length: %d exceeds the limit of %d", kind, length,
+                    limits.getMaxArrayLength());
+            long size = (long) length * elementSize;
+            if (diagnostics == null || size > stream.getRemainingBytes())
+            {
+                throw new IOException(stream.createContextualError(message));
+            }
+            stream.skipBytes(size);
+            report(message + ", array skipped");
+            return -1;
+        }
+        if ((long) length * elementSize > stream.getRemainingBytes())
+        {
+            throw new IOException(stream.createContextualError(
+                    String.format("Invalid %s length: %d elements exceed the remaining byte budget of %d",
+                            kind, length, stream.getRemainingBytes())));
+        }
+        return length;
+    }
+
+    /**
+     * Shares the element budget with other readers decoding parts of the same input.
+     * Elements are added to the shared count in batches, see {@link #flushSharedElements()}.
+     *
+     * @param counter The element count shared by all readers of the input
+     * @return This reader for method chaining
+     */
+    NBTReader shareElements(AtomicLong counter)
+    {
+        this.sharedElements = counter;
+        return this;
+    }
+
+    /**
+     * Adds the elements decoded since the last full batch to the shared count.
+     *
+     * @throws IOException If the shared budget is exhausted
+     */
+    void flushSharedElements() throws IOException
+    {
+        if (sharedElements.addAndGet(elements % SHARED_ELEMENT_BATCH) > limits.getMaxElements())
+        {
+            throw new IOException(stream.createContextualError(
+                    String.format("Input exceeds the limit of %d elements", limits.getMaxElements())));
+        }
+        elements -= elements % SHARED_ELEMENT_BATCH;
+    }
+
+    /**
+     * Counts one more decoded tag against the element budget.
+     *
+     * @throws IOException If the budget is exhausted
+     */
+    private void countElement() throws IOException
+    {
+        if (++elements > limits.getMaxElements() || sharedElements != null && elements % SHARED_ELEMENT_BATCH == 0
+                && sharedElements.addAndGet(SHARED_ELEMENT_BATCH) > limits.getMaxElements())
+        {
+            throw new IOException(stream.createContextualError(
+                    String.format("Input exceeds the limit of %d elements", limits.getMaxElements())));
+        }
+    }
+
+    /**
+     * Reads the name of a tag following its type ID.
+     *
+     * @return The decoded name
+     * @throws IOException If the name is invalid
+     */
+    private String readName() throws IOException
+    {
+        int nameLength = stream.readUnsignedShort();
+        if (nameLength < 0 || nameLength > 32767) // Reasonable limit for NBT names
+        {
+            throw new IOException(stream.createContextualError(
+                    String.format("Invalid tag name length: %d", nameLength)));
+        }
+        return readUTF(nameLength, nameCache);
+    }
+
+    /**
+     * Reads a modified UTF-8 string, falling back to a lossy decoding when reading tolerantly.
+     *
+     * @param length The encoded length in bytes
+     * @param cache  The cache to resolve the string through, or {@code null} to always decode
+     * @return The decoded string
+     * @throws IOException If the string is malformed in strict mode or the stream ends early
+     */
+    private String readUTF(int length, NBTNameCache cache) throws IOException
+    {
+        try
+        {
+            return stream.readUTF(length, cache);
+        } catch (PositionTrackingDataInputStream.MalformedStringException e)
+        {
+            if (diagnostics == null)
+            {
+                throw e;
+            }
+            report(String.format("Malformed modified UTF-8 replaced in '%s'", e.getReplacement()));
+            return e.getReplacement();
+        }
+    }
+
+    /**
+     * Closes all open frames from the top of the stack down, so every list and compound ends after
+     * its last complete child.
+     *
+     * @param top The stack index of the innermost open frame
+     * @return The truncated outermost tag
+     */
+    private Tag<?> truncate(int top)
+    {
+        Tag<?> finished = frames[top].close();
+        while (top > 0)
+        {
+            Frame parent = frames[--top];
+            parent.children.add(finished);
+            finished = parent.close();
+        }
+        return finished;
+    }
+
+    /**
+     * Records a problem found while reading tolerantly, located at the current stream position.
+     *
+     * @param message The description of the problem
+     */
+    private void report(String message)
+    {
+        diagnostics.add(new NBTDiagnostic(stream.getBytesRead(), stream.getTagDepth(),
+                stream.getCurrentTagName(), stream.getCurrentTagType(), message));
+    }
+
+    /**
+     * Records an exception that ended parsing, without the position suffix added by
+     * {@link PositionTrackingDataInputStream#createContextualError(String)}.
+     *
+     * @param e The exception to record
+     */
+    private void report(IOException e)
+    {
+        report(PositionTrackingDataInputStream.baseMessage(e) + ", parsing stopped");
+    }
+
+    /**
+     * Adds the current stream position to an exception that doesn't carry it yet.
+     *
+     * @param e The exception to enrich
+     * @return The exception with context
+     */
+    private IOException withContext(IOException e)
+    {
+        if (e.getMessage() != null && e.getMessage().contains("[Position:"))
+        {
+            return e; // Already has context
+        }
+        return new IOException(stream.createContextualError("Failed to read NBT tag: " + e.getMessage()), e);
+    }
+
+    /**
+     * A compound or list that is currently being read.
+     */
+    private static final class Frame
+    {
+        private boolean list;
+        private int listType;
+        private int remaining;
+        private int depth;
+        private int sizeHint = 16;
+        private String name;
+        private PathSelection selection;
+        private ArrayList<Tag<?>> children;
+
+        /**
+         * Builds the finished tag and releases the references held by this frame.
+         * The size of a compound is remembered to presize the next compound at the same level.
+         */
+        private Tag<?> close()
+        {
+            Tag<?> tag;
+            if (list)
+            {
+                tag = new Tag_List(name, listType, children);
+            } else
+            {
+                tag = new Tag_Compound(name, children);
+                sizeHint = Math.min(children.size(), MAX_SIZE_HINT);
+            }
+            name = null;
+            selection = null;
+            children = null;
+            return tag;
+        }
+    }
 }
@@ -0,0 +1,53 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+
+import java.util.List;
+
+/**
+ * Outcome of a tolerant read, see {@link NBTReader#readTolerant()}.
+ * Holds everything that could be decoded together with the problems that were worked around.
+ *
+ * @author Paul Ferlitz
+ */
+public final class NBTSalvageResult
+{
+    private final ICompoundTag root;
+    private final List<NBTDiagnostic> diagnostics;
+
+    NBTSalvageResult(ICompoundTag root, List<NBTDiagnostic> diagnostics)
+    {
+        this.root = root;
+        this.diagnostics = List.copyOf(diagnostics);
+    }
+
+    /**
+     * Returns the decoded tree. Compounds and lists that were cut short contain the children read before the problem.
+     *
+     * @return The salvaged root compound, or {@code null} if not even the root header could be read
+     */
+    public ICompoundTag getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * Returns the problems found, in the order they were encountered.
+     *
+     * @return The diagnostics, empty if the data was read without problems
+     */
+    public List<NBTDiagnostic> getDiagnostics()
+    {
+        return diagnostics;
+    }
+
+    /**
+     * Returns whether the data was read without any problems.
+     *
+     * @return {@code true} if the root is the complete, unmodified tree
+     */
+    public boolean isComplete()
+    {
+        return root != null && diagnostics.isEmpty();
+    }
+}
@@ -0,0 +1,83 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.IListTag;
+import de.pauleff.jnbt.api.ITag;
+import de.pauleff.jnbt.util.NBTTags;
+
+import java.util.List;
+
+/**
+ * Computes the exact number of bytes a tag occupies in uncompressed binary NBT, without encoding it.
+ * This allows buffers, region file sectors or network frames to be allocated once with the right size,
+ * see {@link NBTWriter#toByteArray(de.pauleff.jnbt.api.ICompoundTag)}.
+ *
+ * <p>Fixed-size payloads are looked up, strings are measured with {@link ModifiedUTF8#encodedLength(String)},
+ * which scans each character once and allocates nothing.</p>
+ *
+ * @author Paul Ferlitz
+ */
+public final class NBTSizes
+{
+    private NBTSizes()
+    {
+    }
+
+    /**
+     * Returns the encoded size of a named tag: its type ID, name and payload, as written for a compound entry or root.
+     *
+     * @param tag The tag to measure
+     * @return The encoded size in bytes
+     * @throws IllegalArgumentException If the tree contains an invalid tag type
+     */
+    public static long sizeOf(ITag<?> tag)
+    {
+        return 1 + 2 + ModifiedUTF8.encodedLength(tag.getName()) + payloadSizeOf(tag);
+    }
+
+    /**
+     * Returns the encoded size of a tag's payload alone, as written for a list element.
+     *
+     * @param tag The tag to measure
+     * @return The encoded payload size in bytes
+     * @throws IllegalArgumentException If the tree contains an invalid tag type
+     */
+    @SuppressWarnings("unchecked")
+    public static long payloadSizeOf(ITag<?> tag)
+    {
+        int fixedSize = NBTStructure.fixedPayloadSize(tag.getId());
+        if (fixedSize >= 0)
+        {
+            return fixedSize;
+        }
+        switch (NBTTags.getById(tag.getId()))
+        {
+            case Tag_End:
+                return 0;
+            case Tag_Byte_Array:
+                return 4 + (long) ((byte[]) tag.getData()).length;
+            case Tag_Int_Array:
+                return 4 + (long) ((int[]) tag.getData()).length * Integer.BYTES;
+            case Tag_Long_Array:
+                return 4 + (long) ((long[]) tag.getData()).length * Long.BYTES;
+            case Tag_String:
+                return 2 + ModifiedUTF8.encodedLength((String) tag.getData());
+            case Tag_List:
+                long size = 1 + 4;
+                for (ITag<?> element : ((IListTag) tag).getData())
+                {
+                    size += payloadSizeOf(element);
+                }
+                return size;
+            case Tag_Compound:
+                size = 1; // Tag_End
+                for (ITag<?> child : (List<ITag<?>>) tag.getData())
+                {
+                    size += sizeOf(child);
+                }
+                return size;
+            case null:
+            default:
+                throw new IllegalArgumentException("Invalid tag type: " + tag.getId() + ".");
+        }
+    }
+}
@@ -0,0 +1,618 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.util.NBTTags;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Pull parser that walks a binary NBT stream as a sequence of events without building any tags.
+ * Callers advance with {@link #next()} and inspect the current event through the getters,
+ * which makes it cheap to pick a few fields out of a large file.
+ *
+ * <p><strong>Usage:</strong></p>
+ * <pre>{@code
+ * try (NBTStreamReader reader = new NBTStreamReader(new File("level.dat")))
+ * {
+ *     while (reader.next() != NBTStreamReader.Event.END_DOCUMENT)
+ *     {
+ *         if (reader.getEvent() == NBTStreamReader.Event.VALUE && reader.getName().equals("LevelName"))
+ *         {
+ *             System.out.println(reader.getString());
+ *         }
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>String and array payloads are only decoded when their getter is called,
+ * otherwise they are skipped by length on the next call to {@link #next()}.
+ * Whole containers can be stepped over with {@link #skipChildren()}.</p>
+ *
+ * <p>The same {@link ReaderLimits} as {@link NBTReader} apply, every array and list header is checked
+ * before the getters allocate anything. Skipped payloads still count against the byte budget.</p>
+ *
+ * @author Paul Ferlitz
+ */
+public class NBTStreamReader implements AutoCloseable
+{
+    private final PositionTrackingDataInputStream stream;
+    private NBTNameCache nameCache = NBTNameCache.shared();
+    private ReaderLimits limits = ReaderLimits.DEFAULT;
+    private long elements;
+
+    // Stack of open containers, list frames also track the element type and remaining element count
+    private boolean[] frameIsList = new boolean[16];
+    private int[] frameListType = new int[16];
+    private int[] frameRemaining = new int[16];
+    private String[] frameName = new String[16];
+    private int top = -1;
+
+    private boolean started;
+    private Event event;
+    private String name = "";
+    private int tagType = -1;
+    private int depth;
+    private boolean inList;
+    private int listType;
+    private int listLength;
+    private long primitive;
+    private double floating;
+    private int pendingLength;
+    private boolean pending;
+
+    /**
+     * The events reported by {@link #next()}.
+     */
+    public enum Event
+    {
+        /**
+         * A compound was opened, its entries follow until the matching {@link #END_COMPOUND}
+         */
+        START_COMPOUND,
+        /**
+         * The innermost open compound was closed
+         */
+        END_COMPOUND,
+        /**
+         * A list was opened, see {@link #getListType()} and {@link #getListLength()}
+         */
+        START_LIST,
+        /**
+         * The innermost open list was closed
+         */
+        END_LIST,
+        /**
+         * A primitive, string or array tag was read
+         */
+        VALUE,
+        /**
+         * The root compound was closed, no further events follow
+         */
+        END_DOCUMENT
+    }
+
+    /**
+     * Create a stream reader by passing it the target NBT file.
+     *
+     * @param nbtFile The target NBT file.
+     * @throws IOException If the file cannot be opened.
+     */
+    public NBTStreamReader(File nbtFile) throws IOException
+    {
+        this(new PositionTrackingDataInputStream(NBTFileHandler.loadNBTToReader(nbtFile)));
+    }
+
+    /**
+     * Create a stream reader by passing it a {@link DataInputStream}.
+     *
+     * @param dis A {@link DataInputStream} containing a NBT file.
+     */
+    public NBTStreamReader(DataInputStream dis)
+    {
+        this(new PositionTrackingDataInputStream(dis));
+    }
+
+    /**
+     * Create a stream reader on top of an already prepared {@link PositionTrackingDataInputStream}.
+     *
+     * @param stream The position tracking stream containing a NBT file.
+     */
+    public NBTStreamReader(PositionTrackingDataInputStream stream)
+    {
+        this.stream = stream;
+    }
+
+    /**
+     * Sets the cache used to decode tag names.
+     *
+     * @param nameCache The cache to use, or {@code null} to decode every name individually
+     * @return This reader for method chaining
+     */
+    public NBTStreamReader setNameCache(NBTNameCache nameCache)
+    {
+        this.nameCache = nameCache;
+        return this;
+    }
+
+    /**
+     * Sets the resource limits enforced while streaming. Has to be called before the first {@link #next()}.
+     *
+     * @param limits The limits to enforce
+     * @return This reader for method chaining
+     * @throws IllegalArgumentException If the limits are {@code null}
+     * @throws IllegalStateException    If reading has already started
+     */
+    public NBTStreamReader setLimits(ReaderLimits limits)
+    {
+        if (limits == null)
+        {
+            throw new IllegalArgumentException("Reader limits cannot be null");
+        }
+        if (started)
+        {
+            throw new IllegalStateException("Reader limits must be set before the first event is read");
+        }
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Advances to the next event.
+     *
+     * @return The new current event
+     * @throws IOException If the stream is corrupted or doesn't follow NBT specification
+     */
+    public Event next() throws IOException
+    {
+        if (pending)
+        {
+            stream.skipBytes(pendingLength);
+            pending = false;
+        }
+
+        if (!started)
+        {
+            started = true;
+            stream.setByteLimit(limits.getMaxTotalBytes());
+            int type = stream.readByte();
+            if (type != NBTTags.Tag_Compound.getId())
+            {
+                throw new IOException(stream.createContextualError(
+                        String.format("Root tag must be a compound but was type %d", type)));
+            }
+            return beginTag(type, readName(), 0);
+        }
+
+        if (top < 0)
+        {
+            return event = Event.END_DOCUMENT;
+        }
+
+        if (frameIsList[top])
+        {
+            if (frameRemaining[top] == 0)
+            {
+                return endContainer(Event.END_LIST);
+            }
+            frameRemaining[top]--;
+            return beginTag(frameListType[top], "", top + 1);
+        }
+
+        int type = stream.readByte();
+        if (type == NBTTags.Tag_End.getId())
+        {
+            return endContainer(Event.END_COMPOUND);
+        }
+        return beginTag(type, readName(), top + 1);
+    }
+
+    /**
+     * Skips the remaining content of the container opened by the current event without decoding it.
+     * Afterwards the current event is the matching {@link Event#END_COMPOUND} or {@link Event#END_LIST}.
+     *
+     * @throws IOException           If the skipped content is malformed
+     * @throws IllegalStateException If the current event doesn't open a container
+     */
+    public void skipChildren() throws IOException
+    {
+        if (event == Event.START_COMPOUND)
+        {
+            NBTStructure.skipCompoundBody(stream);
+            endContainer(Event.END_COMPOUND);
+        } else if (event == Event.START_LIST)
+        {
+            NBTStructure.skipListBody(stream, frameListType[top], frameRemaining[top]);
+            endContainer(Event.END_LIST);
+        } else
+        {
+            throw new IllegalStateException("skipChildren() requires a START_COMPOUND or START_LIST event, but was " + event);
+        }
+    }
+
+    private String readName() throws IOException
+    {
+        return stream.readUTF(stream.readUnsignedShort(), nameCache);
+    }
+
+    private Event beginTag(int type, String tagName, int tagDepth) throws IOException
+    {
+        this.name = tagName;
+        this.tagType = type;
+        this.depth = tagDepth;
+        this.inList = tagDepth > 0 && frameIsList[tagDepth - 1];
+        stream.setCurrentContext(tagDepth, tagName, type);
+        if (++elements > limits.getMaxElements())
+        {
+            throw new IOException(stream.createContextualError(
+                    String.format("Input exceeds the limit of %d elements", limits.getMaxElements())));
+        }
+
+        NBTTags tag = NBTTags.getById(type);
+        switch (tag)
+        {
+            case Tag_Byte -> primitive = stream.readByte();
+            case Tag_Short -> primitive = stream.readShort();
+            case Tag_Int -> primitive = stream.readInt();
+            case Tag_Long -> primitive = stream.readLong();
+            case Tag_Float -> floating = stream.readFloat();
+            case Tag_Double -> floating = stream.readDouble();
+            case Tag_String -> setPending(stream.readUnsignedShort());
+            case Tag_Byte_Array, Tag_Int_Array, Tag_Long_Array ->
+            {
+                int elementSize = tag == NBTTags.Tag_Byte_Array ? 1 : tag == NBTTags.Tag_Int_Array ? Integer.BYTES : Long.BYTES;
+                int length = checkLength(tag.getName(), stream.readInt(), elementSize);
+                listLength = length;
+                setPending((long) length * elementSize);
+            }
+            case Tag_List ->
+            {
+                checkDepth(tagDepth);
+                int elementType = stream.readByte();
+                int length = NBTStructure.readListLength(stream, elementType, limits);
+                if (length > limits.getMaxElements() - elements)
+                {
+                    throw new IOException(stream.createContextualError(
+                            String.format("List of %d elements exceeds the limit of %d elements", length,
+                                    limits.getMaxElements())));
+                }
+                pushFrame(true, elementType, length, tagName);
+                listType = elementType;
+                listLength = length;
+                return event = Event.START_LIST;
+            }
+            case Tag_Compound ->
+            {
+                checkDepth(tagDepth);
+                pushFrame(false, 0, 0, tagName);
+                return event = Event.START_COMPOUND;
+            }
+            case null, default -> throw new IOException(stream.createContextualError(
+                    String.format("Unknown tag type: %d", type)));
+        }
+        return event = Event.VALUE;
+    }
+
+    private void checkDepth(int tagDepth) throws IOException
+    {
+        if (tagDepth > limits.getMaxDepth())
+        {
+            throw new IOException(stream.createContextualError(
+                    String.format("Maximum nesting depth of %d exceeded", limits.getMaxDepth())));
+        }
+    }
+
+    /**
+     * Checks the length prefix of an array against the limits, before a getter allocates anything.
+     */
+    private int checkLength(String kind, int length, int elementSize) throws IOException
+    {
+        if (length < 0)
+        {
+            throw new IOException(stream.createContextualError(
+                    String.format("Invalid %s length: %d", kind, length)));
+        }
+        if (length > limits.getMaxArrayLength())
+        {
+            throw new IOException(stream.createContextualError(
+                    String.format("Invalid %s length: %d exceeds the limit of %d", kind, length,
+                            limits.getMaxArrayLength())));
+        }
+        if ((long) length * elementSize > stream.getRemainingBytes())
+        {
+            throw new IOException(stream.createContextualError(
+                    String.format("Invalid %s length: %d elements exceed the remaining byte budget of %d",
+                            kind, length, stream.getRemainingBytes())));
+        }
+        return length;
+    }
+
+    private void setPending(long length) throws IOException
+    {
+        if (length > Integer.MAX_VALUE)
+        {
+            throw new IOException(stream.createContextualError(String.format("Payload too large: %d bytes", length)));
+        }
+        pendingLength = (int) length;
+        pending = true;
+    }
+
+    private void pushFrame(boolean isList, int elementType, int length, String frameTagName)
+    {
+        if (++top == frameIsList.length)
+        {
+            int newSize = top * 2;
+            frameIsList = Arrays.copyOf(frameIsList, newSize);
+            frameListType = Arrays.copyOf(frameListType, newSize);
+            frameRemaining = Arrays.copyOf(frameRemaining, newSize);
+            frameName = Arrays.copyOf(frameName, newSize);
+        }
+        frameIsList[top] = isList;
+        frameListType[top] = elementType;
+        frameRemaining[top] = length;
+        frameName[top] = frameTagName;
+    }
+
+    private Event endContainer(Event endEvent)
+    {
+        name = frameName[top];
+        tagType = frameIsList[top] ? NBTTags.Tag_List.getId() : NBTTags.Tag_Compound.getId();
+        frameName[top] = null;
+        inList = top > 0 && frameIsList[top - 1];
+        depth = top--;
+        return event = endEvent;
+    }
+
+    /*
+     * ========== EVENT STATE ==========
+     */
+
+    /**
+     * Returns the current event.
+     *
+     * @return The event last returned by {@link #next()}, or {@code null} before the first call
+     */
+    public Event getEvent()
+    {
+        return event;
+    }
+
+    /**
+     * Returns the name of the current tag. List elements have an empty name.
+     * For end events this is the name of the container being closed.
+     *
+     * @return The tag name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the NBT type ID of the current tag.
+     *
+     * @return The type ID
+     */
+    public int getTagType()
+    {
+        return tagType;
+    }
+
+    /**
+     * Returns the nesting depth of the current tag (root = 0).
+     *
+     * @return The depth
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Returns whether the current tag is an element of a list rather than a named compound entry.
+     *
+     * @return {@code true} if the current tag's parent is a list
+     */
+    public boolean isInList()
+    {
+        return inList;
+    }
+
+    /**
+     * Returns the element type of the list opened by the current {@link Event#START_LIST} event.
+     *
+     * @return The element type ID
+     */
+    public int getListType()
+    {
+        return listType;
+    }
+
+    /**
+     * Returns the number of elements of the current list or array tag.
+     *
+     * @return The element count
+     */
+    public int getListLength()
+    {
+        return listLength;
+    }
+
+    /*
+     * ========== VALUE ACCESS ==========
+     */
+
+    /**
+     * Returns the current byte value.
+     *
+     * @return The value of the current Tag_Byte
+     */
+    public byte getByte()
+    {
+        requireValue(NBTTags.Tag_Byte);
+        return (byte) primitive;
+    }
+
+    /**
+     * Returns the current short value.
+     *
+     * @return The value of the current Tag_Short
+     */
+    public short getShort()
+    {
+        requireValue(NBTTags.Tag_Short);
+        return (short) primitive;
+    }
+
+    /**
+     * Returns the current int value.
+     *
+     * @return The value of the current Tag_Int
+     */
+    public int getInt()
+    {
+        requireValue(NBTTags.Tag_Int);
+        return (int) primitive;
+    }
+
+    /**
+     * Returns the current long value.
+     *
+     * @return The value of the current Tag_Long
+     */
+    public long getLong()
+    {
+        requireValue(NBTTags.Tag_Long);
+        return primitive;
+    }
+
+    /**
+     * Returns the current float value.
+     *
+     * @return The value of the current Tag_Float
+     */
+    public float getFloat()
+    {
+        requireValue(NBTTags.Tag_Float);
+        return (float) floating;
+    }
+
+    /**
+     * Returns the current double value.
+     *
+     * @return The value of the current Tag_Double
+     */
+    public double getDouble()
+    {
+        requireValue(NBTTags.Tag_Double);
+        return floating;
+    }
+
+    /**
+     * Decodes the current string value. Can only be called once per event.
+     *
+     * @return The string value
+     * @throws IOException If the payload cannot be read
+     */
+    public String getString() throws IOException
+    {
+        return stream.readUTF(consumePending(NBTTags.Tag_String), null);
+    }
+
+    /**
+     * Reads the current byte array value. Can only be called once per event.
+     *
+     * @return The byte array
+     * @throws IOException If the payload cannot be read
+     */
+    public byte[] getByteArray() throws IOException
+    {
+        byte[] bytes = new byte[consumePending(NBTTags.Tag_Byte_Array)];
+        stream.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads the current int array value. Can only be called once per event.
+     *
+     * @return The int array
+     * @throws IOException If the payload cannot be read
+     */
+    public int[] getIntArray() throws IOException
+    {
+        consumePending(NBTTags.Tag_Int_Array);
+        int[] values = new int[listLength];
+        stream.readInts(values);
+        return values;
+    }
+
+    /**
+     * Reads the current long array value. Can only be called once per event.
+     *
+     * @return The long array
+     * @throws IOException If the payload cannot be read
+     */
+    public long[] getLongArray() throws IOException
+    {
+        consumePending(NBTTags.Tag_Long_Array);
+        long[] values = new long[listLength];
+        stream.readLongs(values);
+        return values;
+    }
+
+    /**
+     * Returns the current value boxed according to its tag type.
+     *
+     * @return The value of the current {@link Event#VALUE} event
+     * @throws IOException If a string or array payload cannot be read
+     */
+    public Object getValue() throws IOException
+    {
+        return switch (NBTTags.getById(tagType))
+        {
+            case Tag_Byte -> getByte();
+            case Tag_Short -> getShort();
+            case Tag_Int -> getInt();
+            case Tag_Long -> getLong();
+            case Tag_Float -> getFloat();
+            case Tag_Double -> getDouble();
+            case Tag_String -> getString();
+            case Tag_Byte_Array -> getByteArray();
+            case Tag_Int_Array -> getIntArray();
+            case Tag_Long_Array -> getLongArray();
+            case null, default -> throw new IllegalStateException("Current event " + event + " has no value");
+        };
+    }
+
+    private void requireValue(NBTTags expected)
+    {
+        if (event != Event.VALUE || tagType != expected.getId())
+        {
+            throw new IllegalStateException(String.format("Current event is %s of type %d, not a %s value",
+                    event, tagType, expected.getName()));
+        }
+    }
+
+    private int consumePending(NBTTags expected)
+    {
+        requireValue(expected);
+        if (!pending)
+        {
+            throw new IllegalStateException("The value of the current " + expected.getName() + " was already read");
+        }
+        pending = false;
+        return pendingLength;
+    }
+
+    /**
+     * Method to close the reader.
+     *
+     * @throws IOException When encountering an error whilst closing the reader.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        stream.close();
+    }
+}
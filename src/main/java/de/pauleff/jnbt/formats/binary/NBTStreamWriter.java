@@ -0,0 +1,570 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.util.NBTTags;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Push writer that emits binary NBT tag by tag without building any tags, the counterpart of {@link NBTStreamReader}.
+ * Only the stack of open containers is kept in memory, so structures far larger than the heap can be written
+ * as long as they are produced in order.
+ *
+ * <p><strong>Usage:</strong></p>
+ * <pre>{@code
+ * try (NBTStreamWriter writer = new NBTStreamWriter(file, Compression_Types.GZIP))
+ * {
+ *     writer.beginCompound("export");
+ *     writer.writeInt("version", 3);
+ *     writer.beginList("rows", NBTTags.Tag_Compound, rowCount);
+ *     for (Row row : rows)
+ *     {
+ *         writer.beginCompound(null);
+ *         writer.writeString("id", row.id());
+ *         writer.writeLongArray("values", row.values());
+ *         writer.endCompound();
+ *     }
+ *     writer.endList();
+ *     writer.endCompound();
+ * }
+ * }</pre>
+ *
+ * <p>The structure is validated as it is written: the root must be a compound, lists only accept elements of
+ * their declared type and must receive exactly their declared number of elements, and every container must be
+ * closed by the matching end method. Violations, like any call after {@link #close()}, throw an
+ * {@link IllegalStateException} before anything is written.
+ * Names are required inside compounds and ignored for list elements.</p>
+ *
+ * @author Paul Ferlitz
+ */
+public class NBTStreamWriter implements AutoCloseable
+{
+    private final DataOutputStream stream;
+    // Shares the encoding core of the tree writer, file output is encoded straight into the output buffer
+    private final NBTWriter encoder;
+
+    // Stack of open containers, list frames also track the element type and remaining element count
+    private boolean[] frameIsList = new boolean[16];
+    private int[] frameListType = new int[16];
+    private int[] frameRemaining = new int[16];
+    private String[] frameName = new String[16];
+    private int top = -1;
+
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * Create a stream writer by passing it the target NBT file and how to compress it.
+     * A backup of the target file will be made before overwriting it, if it exists.
+     *
+     * @param nbtFile     The target NBT file.
+     * @param compression The compression type of the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    public NBTStreamWriter(File nbtFile, Compression_Types compression) throws IOException
+    {
+        this(NBTFileHandler.loadNBTToWriter(nbtFile, compression));
+    }
+
+    /**
+     * Create a stream writer by passing it the target NBT file, how to compress it and how to tune the output pipeline.
+     * If the target file exists, it is backed up and saved in place or atomically as configured by the settings.
+     * With atomic saves the target is only replaced once the document was completed and the writer closed.
+     *
+     * @param nbtFile     The target NBT file.
+     * @param compression The compression type of the file.
+     * @param settings    The buffer sizes, compression level and save behaviour to write with.
+     * @throws IOException If the file cannot be opened.
+     */
+    public NBTStreamWriter(File nbtFile, Compression_Types compression, WriterSettings settings) throws IOException
+    {
+        this(NBTFileHandler.loadNBTToWriter(nbtFile, compression, settings));
+    }
+
+    /**
+     * Create a stream writer by passing it the target NBT file as a {@link DataOutputStream}.
+     *
+     * @param dos A {@link DataOutputStream} receiving the NBT data.
+     */
+    public NBTStreamWriter(DataOutputStream dos)
+    {
+        this.stream = dos;
+        this.encoder = new NBTWriter(dos).beginStream();
+    }
+
+    /*
+     * ========== CONTAINERS ==========
+     */
+
+    /**
+     * Opens a compound. The first call opens the root compound, inside a list it opens the next element.
+     *
+     * @param name The name of the compound, ignored for list elements
+     * @return This writer for method chaining
+     * @throws IOException           If writing fails
+     * @throws IllegalStateException If a compound is not allowed here
+     */
+    public NBTStreamWriter beginCompound(String name) throws IOException
+    {
+        if (top < 0)
+        {
+            // The root is a named compound, the only tag allowed outside any container
+            requireOpen();
+            writeNamed(NBTTags.Tag_Compound, name);
+        } else
+        {
+            writeHeader(NBTTags.Tag_Compound, name);
+        }
+        push(false, 0, 0, name);
+        return this;
+    }
+
+    /**
+     * Closes the innermost open compound. Closing the root compound completes the document.
+     *
+     * @return This writer for method chaining
+     * @throws IOException           If writing fails
+     * @throws IllegalStateException If the innermost open container isn't a compound
+     */
+    public NBTStreamWriter endCompound() throws IOException
+    {
+        requireNotClosed();
+        if (top < 0 || frameIsList[top])
+        {
+            throw new IllegalStateException("endCompound() requires an open compound, but " + describeTop() + " is open");
+        }
+        putByte(NBTTags.Tag_End.getId());
+        pop();
+        if (top < 0)
+        {
+            finished = true;
+        }
+        return this;
+    }
+
+    /**
+     * Opens a list that will hold exactly {@code length} elements of the given type.
+     * Elements are written with the methods matching the type, e.g. {@link #writeInt(String, int)} for
+     * {@link NBTTags#Tag_Int} or {@link #beginCompound(String)} for {@link NBTTags#Tag_Compound}.
+     *
+     * @param name        The name of the list, ignored for list elements
+     * @param elementType The type of all elements, {@link NBTTags#Tag_End} only for empty lists
+     * @param length      The number of elements that will follow
+     * @return This writer for method chaining
+     * @throws IOException              If writing fails
+     * @throws IllegalArgumentException If the element type or length is invalid
+     * @throws IllegalStateException    If a list is not allowed here
+     */
+    public NBTStreamWriter beginList(String name, NBTTags elementType, int length) throws IOException
+    {
+        if (elementType == null)
+        {
+            throw new IllegalArgumentException("List type cannot be null");
+        }
+        if (length < 0)
+        {
+            throw new IllegalArgumentException("List length cannot be negative: " + length);
+        }
+        if (elementType == NBTTags.Tag_End && length > 0)
+        {
+            throw new IllegalArgumentException("Only empty lists can have the element type Tag_End");
+        }
+        writeHeader(NBTTags.Tag_List, name);
+        putByte(elementType.getId());
+        putInt(length);
+        push(true, elementType.getId(), length, name);
+        return this;
+    }
+
+    /**
+     * Closes the innermost open list.
+     *
+     * @return This writer for method chaining
+     * @throws IllegalStateException If the innermost open container isn't a list or not all its elements were written
+     */
+    public NBTStreamWriter endList()
+    {
+        requireNotClosed();
+        if (top < 0 || !frameIsList[top])
+        {
+            throw new IllegalStateException("endList() requires an open list, but " + describeTop() + " is open");
+        }
+        if (frameRemaining[top] > 0)
+        {
+            throw new IllegalStateException(String.format("List '%s' is still missing %d elements", frameName[top], frameRemaining[top]));
+        }
+        pop();
+        return this;
+    }
+
+    /*
+     * ========== VALUES ==========
+     */
+
+    /**
+     * Writes a byte tag.
+     *
+     * @param name  The name of the tag, ignored for list elements
+     * @param value The value
+     * @return This writer for method chaining
+     * @throws IOException           If writing fails
+     * @throws IllegalStateException If a byte tag is not allowed here
+     */
+    public NBTStreamWriter writeByte(String name, byte value) throws IOException
+    {
+        writeHeader(NBTTags.Tag_Byte, name);
+        putByte(value);
+        return this;
+    }
+
+    /**
+     * Writes a short tag.
+     *
+     * @param name  The name of the tag, ignored for list elements
+     * @param value The value
+     * @return This writer for method chaining
+     * @throws IOException           If writing fails
+     * @throws IllegalStateException If a short tag is not allowed here
+     */
+    public NBTStreamWriter writeShort(String name, short value) throws IOException
+    {
+        writeHeader(NBTTags.Tag_Short, name);
+        encoder.putShort(value);
+        return this;
+    }
+
+    /**
+     * Writes an int tag.
+     *
+     * @param name  The name of the tag, ignored for list elements
+     * @param value The value
+     * @return This writer for method chaining
+     * @throws IOException           If writing fails
+     * @throws IllegalStateException If an int tag is not allowed here
+     */
+    public NBTStreamWriter writeInt(String name, int value) throws IOException
+    {
+        writeHeader(NBTTags.Tag_Int, name);
+        putInt(value);
+        return this;
+    }
+
+    /**
+     * Writes a long tag.
+     *
+     * @param name  The name of the tag, ignored for list elements
+     * @param value The value
+     * @return This writer for method chaining
+     * @throws IOException           If writing fails
+     * @throws IllegalStateException If a long tag is not allowed here
+     */
+    public NBTStreamWriter writeLong(String name, long value) throws IOException
+    {
+        writeHeader(NBTTags.Tag_Long, name);
+        encoder.putLong(value);
+        return this;
+    }
+
+    /**
+     * Writes a float tag.
+     *
+     * @param name  The name of the tag, ignored for list elements
+     * @param value The value
+     * @return This writer for method chaining
+     * @throws IOException           If writing fails
+     * @throws IllegalStateException If a float tag is not allowed here
+     */
+    public NBTStreamWriter writeFloat(String name, float value) throws IOException
+    {
+        writeHeader(NBTTags.Tag_Float, name);
+        encoder.putFloat(value);
+        return this;
+    }
+
+    /**
+     * Writes a double tag.
+     *
+     * @param name  The name of the tag, ignored for list elements
+     * @param value The value
+     * @return This writer for method chaining
+     * @throws IOException           If writing fails
+     * @throws IllegalStateException If a double tag is not allowed here
+     */
+    public NBTStreamWriter writeDouble(String name, double value) throws IOException
+    {
+        writeHeader(NBTTags.Tag_Double, name);
+        encoder.putDouble(value);
+        return this;
+    }
+
+    /**
+     * Writes a string tag.
+     *
+     * @param name  The name of the tag, ignored for list elements
+     * @param value The value
+     * @return This writer for method chaining
+     * @throws IOException              If writing fails or the encoded string is longer than 65535 bytes
+     * @throws IllegalArgumentException If the value is {@code null}
+     * @throws IllegalStateException    If a string tag is not allowed here
+     */
+    public NBTStreamWriter writeString(String name, String value) throws IOException
+    {
+        requireValue(value);
+        // Measured before the header, so an oversized value leaves neither a dangling header nor a miscounted list
+        int length = NBTWriter.utfLength(value);
+        writeHeader(NBTTags.Tag_String, name);
+        encoder.writeUTF(value, length);
+        return this;
+    }
+
+    /**
+     * Writes a byte array tag.
+     *
+     * @param name   The name of the tag, ignored for list elements
+     * @param values The values
+     * @return This writer for method chaining
+     * @throws IOException              If writing fails
+     * @throws IllegalArgumentException If the values are {@code null}
+     * @throws IllegalStateException    If a byte array tag is not allowed here
+     */
+    public NBTStreamWriter writeByteArray(String name, byte[] values) throws IOException
+    {
+        requireValue(values);
+        writeHeader(NBTTags.Tag_Byte_Array, name);
+        putInt(values.length);
+        encoder.writeBytes(values, 0, values.length);
+        return this;
+    }
+
+    /**
+     * Writes an int array tag.
+     *
+     * @param name   The name of the tag, ignored for list elements
+     * @param values The values
+     * @return This writer for method chaining
+     * @throws IOException              If writing fails
+     * @throws IllegalArgumentException If the values are {@code null}
+     * @throws IllegalStateException    If an int array tag is not allowed here
+     */
+    public NBTStreamWriter writeIntArray(String name, int[] values) throws IOException
+    {
+        requireValue(values);
+        writeHeader(NBTTags.Tag_Int_Array, name);
+        putInt(values.length);
+        encoder.writeInts(values);
+        return this;
+    }
+
+    /**
+     * Writes a long array tag.
+     *
+     * @param name   The name of the tag, ignored for list elements
+     * @param values The values
+     * @return This writer for method chaining
+     * @throws IOException              If writing fails
+     * @throws IllegalArgumentException If the values are {@code null}
+     * @throws IllegalStateException    If a long array tag is not allowed here
+     */
+    public NBTStreamWriter writeLongArray(String name, long[] values) throws IOException
+    {
+        requireValue(values);
+        writeHeader(NBTTags.Tag_Long_Array, name);
+        putInt(values.length);
+        encoder.writeLongs(values);
+        return this;
+    }
+
+    /*
+     * ========== STATE ==========
+     */
+
+    /**
+     * Returns the number of currently open containers, 0 before the root was opened and after it was closed.
+     *
+     * @return The nesting depth
+     */
+    public int getDepth()
+    {
+        return top + 1;
+    }
+
+    /**
+     * Returns whether the root compound has been closed.
+     *
+     * @return {@code true} once the document is complete
+     */
+    public boolean isFinished()
+    {
+        return finished;
+    }
+
+    /**
+     * Hands everything written so far on to the underlying stream.
+     *
+     * @throws IOException If writing fails
+     */
+    public void flush() throws IOException
+    {
+        requireNotClosed();
+        encoder.flush();
+        stream.flush();
+    }
+
+    /**
+     * Method to close the writer.
+     * An incomplete document is not completed: with atomic saves the target file is left untouched,
+     * otherwise it ends after the last tag written.
+     *
+     * @throws IOException           When encountering an error whilst closing the writer.
+     * @throws IllegalStateException If the document was closed before the root compound was
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        try
+        {
+            if (!finished && stream instanceof NBTFileHandler.PendingOutputStream pending && pending.isAtomic())
+            {
+                pending.discard();
+            } else
+            {
+                encoder.flush();
+            }
+        } finally
+        {
+            stream.close();
+        }
+        if (!finished)
+        {
+            throw new IllegalStateException(top < 0
+                    ? "Writer closed before a root compound was written"
+                    : String.format("Writer closed with %d containers still open", top + 1));
+        }
+    }
+
+    /*
+     * ========== INTERNALS ==========
+     */
+
+    /**
+     * Validates that a tag of the given type may follow and writes its type ID and name where needed.
+     * Inside a list, the element is counted against the declared length instead.
+     */
+    private void writeHeader(NBTTags type, String name) throws IOException
+    {
+        requireNotClosed();
+        if (top < 0)
+        {
+            requireOpen();
+            throw new IllegalStateException("The root tag must be a compound, but was " + type.getName());
+        }
+        if (frameIsList[top])
+        {
+            if (type.getId() != frameListType[top])
+            {
+                throw new IllegalStateException(String.format("List '%s' holds %s elements, cannot add %s",
+                        frameName[top], NBTTags.getById(frameListType[top]).getName(), type.getName()));
+            }
+            if (frameRemaining[top] == 0)
+            {
+                throw new IllegalStateException(String.format("List '%s' already holds all its elements", frameName[top]));
+            }
+            frameRemaining[top]--;
+            return;
+        }
+        writeNamed(type, name);
+    }
+
+    /**
+     * Writes a type ID followed by the tag name, checking the name length before either is written.
+     */
+    private void writeNamed(NBTTags type, String name) throws IOException
+    {
+        String checkedName = requireName(name);
+        int length = NBTWriter.utfLength(checkedName);
+        encoder.putByte(type.getId());
+        encoder.writeUTF(checkedName, length);
+    }
+
+    private void requireOpen()
+    {
+        if (finished)
+        {
+            throw new IllegalStateException("The root compound has already been closed");
+        }
+        requireNotClosed();
+    }
+
+    private void requireNotClosed()
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("The writer has already been closed");
+        }
+    }
+
+    private static String requireName(String name)
+    {
+        if (name == null)
+        {
+            throw new IllegalArgumentException("Tag name cannot be null");
+        }
+        return name;
+    }
+
+    private static void requireValue(Object value)
+    {
+        if (value == null)
+        {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+    }
+
+    private void push(boolean isList, int listType, int length, String name)
+    {
+        if (++top == frameIsList.length)
+        {
+            int size = top * 2;
+            frameIsList = Arrays.copyOf(frameIsList, size);
+            frameListType = Arrays.copyOf(frameListType, size);
+            frameRemaining = Arrays.copyOf(frameRemaining, size);
+            frameName = Arrays.copyOf(frameName, size);
+        }
+        frameIsList[top] = isList;
+        frameListType[top] = listType;
+        frameRemaining[top] = length;
+        frameName[top] = name;
+    }
+
+    private void pop()
+    {
+        frameName[top] = null;
+        top--;
+    }
+
+    private String describeTop()
+    {
+        if (top < 0)
+        {
+            return "no container";
+        }
+        return String.format("%s '%s'", frameIsList[top] ? "list" : "compound", frameName[top]);
+    }
+
+    private void putByte(int value) throws IOException
+    {
+        encoder.putByte(value);
+    }
+
+    private void putInt(int value) throws IOException
+    {
+        encoder.putInt(value);
+    }
+}
@@ -0,0 +1,323 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.util.NBTTags;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Helpers for walking the binary NBT structure without materializing any tags.
+ * Used wherever a payload only has to be stepped over, e.g. by the streaming and selective readers.
+ *
+ * @author Paul Ferlitz
+ */
+final class NBTStructure
+{
+    private static final int COMPOUND_FRAME = -1;
+    private static final String LIST_ELEMENT_NAME = "null";
+    static final String TAG_END_LIST_MESSAGE = "Invalid list of %d elements with element type Tag_End";
+
+    private NBTStructure()
+    {
+    }
+
+    /**
+     * Returns the encoded size of a fixed-size payload.
+     *
+     * @param type The NBT type ID
+     * @return The payload size in bytes, or -1 if the payload size is variable
+     */
+    static int fixedPayloadSize(int type)
+    {
+        return switch (type)
+        {
+            case 1 -> Byte.BYTES;
+            case 2 -> Short.BYTES;
+            case 3, 5 -> Integer.BYTES;
+            case 4, 6 -> Long.BYTES;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Returns the smallest possible encoded size of a payload, e.g. 1 for a compound that only holds its Tag_End.
+     * Used to charge list elements against a byte budget before any of them is read.
+     *
+     * @param type The NBT type ID
+     * @return The minimum payload size in bytes, 0 for Tag_End
+     */
+    static int minPayloadSize(int type)
+    {
+        int fixedSize = fixedPayloadSize(type);
+        if (fixedSize > 0)
+        {
+            return fixedSize;
+        }
+        return switch (type)
+        {
+            case 7, 11, 12 -> Integer.BYTES;
+            case 8 -> Short.BYTES;
+            case 9 -> Byte.BYTES + Integer.BYTES;
+            case 10 -> Byte.BYTES;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Skips the payload of a tag whose type byte and name have already been read.
+     *
+     * @param in   The stream positioned at the start of the payload
+     * @param type The NBT type ID of the payload
+     * @throws IOException If the payload is malformed or the stream ends early
+     */
+    static void skipPayload(PositionTrackingDataInputStream in, int type) throws IOException
+    {
+        if (type == NBTTags.Tag_Compound.getId())
+        {
+            skipCompoundBody(in);
+        } else if (type == NBTTags.Tag_List.getId())
+        {
+            int listType = in.readByte();
+            skipListBody(in, listType, readListLength(in, listType));
+        } else
+        {
+            skipLeaf(in, type);
+        }
+    }
+
+    /**
+     * Skips the remaining entries of a compound up to and including its Tag_End.
+     *
+     * @param in The stream positioned at the next entry of the compound
+     * @throws IOException If the payload is malformed or the stream ends early
+     */
+    static void skipCompoundBody(PositionTrackingDataInputStream in) throws IOException
+    {
+        skipContainers(in, COMPOUND_FRAME, 0, null);
+    }
+
+    /**
+     * Skips the remaining elements of a list.
+     *
+     * @param in       The stream positioned at the next element of the list
+     * @param listType The element type ID of the list
+     * @param count    The number of elements left to skip
+     * @throws IOException If the payload is malformed or the stream ends early
+     */
+    static void skipListBody(PositionTrackingDataInputStream in, int listType, int count) throws IOException
+    {
+        int elementSize = fixedPayloadSize(listType);
+        if (elementSize > 0)
+        {
+            in.skipBytes((long) elementSize * count);
+        } else if (count > 0)
+        {
+            skipContainers(in, listType, count, null);
+        }
+    }
+
+    /**
+     * Walks the remaining elements of a list in file order until a tag with the given name is found.
+     * List elements are named {@code "null"}, just like the decoded tags.
+     *
+     * @param in       The stream positioned at the first element of the list
+     * @param listType The element type ID of the list
+     * @param count    The number of elements of the list
+     * @param name     The tag name to look for
+     * @return {@code true} if the list contains a tag with that name at any depth
+     * @throws IOException If the payload is malformed or the stream ends early
+     */
+    static boolean containsName(PositionTrackingDataInputStream in, int listType, int count, String name) throws IOException
+    {
+        if (count == 0 || fixedPayloadSize(listType) > 0 && !LIST_ELEMENT_NAME.equals(name))
+        {
+            return false;
+        }
+        return skipContainers(in, listType, count, name);
+    }
+
+    /**
+     * Reads and validates the length field of a list whose element type has already been read.
+     * Only empty lists may have the element type Tag_End, as Tag_End has no payload to read.
+     *
+     * @param in       The stream positioned at the list length
+     * @param listType The element type ID of the list
+     * @return The number of elements in the list
+     * @throws IOException If the element type or length is invalid
+     */
+    static int readListLength(PositionTrackingDataInputStream in, int listType) throws IOException
+    {
+        if (NBTTags.getById(listType) == null)
+        {
+            throw new IOException(in.createContextualError(
+                    String.format("Invalid list element type: %d", listType)));
+        }
+        int length = in.readInt();
+        if (length < 0)
+        {
+            throw new IOException(in.createContextualError(
+                    String.format("Invalid list length: %d", length)));
+        }
+        if (listType == NBTTags.Tag_End.getId() && length > 0)
+        {
+            throw new IOException(in.createContextualError(
+                    String.format(TAG_END_LIST_MESSAGE, length)));
+        }
+        return length;
+    }
+
+    /**
+     * Reads the length field of a list and checks it against the limits before any element is read.
+     * Every element is charged its {@link #minPayloadSize(int)} against the remaining byte budget,
+     * so a header claiming millions of tiny elements in a small input is rejected up front.
+     *
+     * @param in       The stream positioned at the list length
+     * @param listType The element type ID of the list
+     * @param limits   The limits to enforce
+     * @return The number of elements in the list
+     * @throws IOException If the element type or length is invalid or exceeds the limits
+     */
+    static int readListLength(PositionTrackingDataInputStream in, int listType, ReaderLimits limits) throws IOException
+    {
+        int length = readListLength(in, listType);
+        if (length > limits.getMaxListLength())
+        {
+            throw new IOException(in.createContextualError(
+                    String.format("Invalid list length: %d exceeds the limit of %d", length, limits.getMaxListLength())));
+        }
+        if ((long) length * minPayloadSize(listType) > in.getRemainingBytes())
+        {
+            throw new IOException(in.createContextualError(
+                    String.format("Invalid list length: %d elements exceed the remaining byte budget of %d",
+                            length, in.getRemainingBytes())));
+        }
+        return length;
+    }
+
+    /**
+     * Walks nested containers with an explicit stack, so deeply nested input cannot overflow the call stack.
+     * Each stack frame holds either {@link #COMPOUND_FRAME} or a list element type plus the remaining element count.
+     * If a name is given, the walk stops early at the first tag carrying it.
+     *
+     * @return {@code true} if the walk stopped at a tag with the given name
+     */
+    private static boolean skipContainers(PositionTrackingDataInputStream in, int rootFrame, int rootCount, String name)
+            throws IOException
+    {
+        int[] frames = new int[16];
+        int[] remaining = new int[16];
+        int top = 0;
+        frames[0] = rootFrame;
+        remaining[0] = rootCount;
+
+        while (top >= 0)
+        {
+            int type;
+            if (frames[top] == COMPOUND_FRAME)
+            {
+                type = in.readByte();
+                if (type == NBTTags.Tag_End.getId())
+                {
+                    top--;
+                    continue;
+                }
+                int nameLength = in.readUnsignedShort();
+                if (name == null)
+                {
+                    in.skipBytes(nameLength);
+                } else if (name.equals(normalizeName(in.readUTF(nameLength, NBTNameCache.shared()))))
+                {
+                    return true;
+                }
+            } else
+            {
+                if (remaining[top] == 0)
+                {
+                    top--;
+                    continue;
+                }
+                remaining[top]--;
+                type = frames[top];
+                if (LIST_ELEMENT_NAME.equals(name))
+                {
+                    return true;
+                }
+            }
+
+            int frame;
+            int count = 0;
+            if (type == NBTTags.Tag_Compound.getId())
+            {
+                frame = COMPOUND_FRAME;
+            } else if (type == NBTTags.Tag_List.getId())
+            {
+                frame = in.readByte();
+                count = readListLength(in, frame);
+                int elementSize = fixedPayloadSize(frame);
+                if (count == 0 || elementSize > 0 && !LIST_ELEMENT_NAME.equals(name))
+                {
+                    in.skipBytes((long) Math.max(elementSize, 0) * count);
+                    continue;
+                }
+            } else
+            {
+                skipLeaf(in, type);
+                continue;
+            }
+
+            if (++top == frames.length)
+            {
+                frames = Arrays.copyOf(frames, top * 2);
+                remaining = Arrays.copyOf(remaining, top * 2);
+            }
+            frames[top] = frame;
+            remaining[top] = count;
+        }
+        return false;
+    }
+
+    /**
+     * Maps a name as read from the file to the name of the decoded tag, which turns empty names into {@code "null"}.
+     *
+     * @param name The raw tag name
+     * @return The name the decoded tag reports
+     */
+    static String normalizeName(String name)
+    {
+        return name.isEmpty() ? LIST_ELEMENT_NAME : name;
+    }
+
+    /**
+     * Skips a payload that contains no nested tags.
+     */
+    private static void skipLeaf(PositionTrackingDataInputStream in, int type) throws IOException
+    {
+        int fixedSize = fixedPayloadSize(type);
+        if (fixedSize > 0)
+        {
+            in.skipBytes(fixedSize);
+            return;
+        }
+        NBTTags tagType = NBTTags.getById(type);
+        switch (tagType)
+        {
+            case Tag_String -> in.skipBytes(in.readUnsignedShort());
+            case Tag_Byte_Array -> in.skipBytes(readArrayLength(in, tagType));
+            case Tag_Int_Array -> in.skipBytes((long) readArrayLength(in, tagType) * Integer.BYTES);
+            case Tag_Long_Array -> in.skipBytes((long) readArrayLength(in, tagType) * Long.BYTES);
+            case null, default -> throw new IOException(in.createContextualError(
+                    String.format("Unknown tag type: %d", type)));
+        }
+    }
+
+    private static int readArrayLength(PositionTrackingDataInputStream in, NBTTags tagType) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            throw new IOException(in.createContextualError(
+                    String.format("Invalid %s length: %d", tagType.getName(), length)));
+        }
+        return length;
+    }
+}
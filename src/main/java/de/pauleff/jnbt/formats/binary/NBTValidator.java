@@ -0,0 +1,338 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.util.NBTTags;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Checks whether data is well-formed binary NBT without building any tags.
+ * The validator walks the format like {@link NBTReader} would and checks tag IDs, name and string encodings,
+ * list element types and the lengths of arrays and lists, but steps over every payload instead of decoding it.
+ * Resource limits are checked the same way, so data that passes validation can be read with the same limits.
+ *
+ * <p>Only the first problem is reported, together with the byte offset in the uncompressed data it was found at.</p>
+ *
+ * <pre>{@code
+ * NBTValidator.Result result = new NBTValidator().setLimits(limits).validate(upload);
+ * if (!result.isValid()) reject(result.getMessage());
+ * }</pre>
+ *
+ * @author Paul Ferlitz
+ */
+public class NBTValidator
+{
+    private static final int COMPOUND_FRAME = -1;
+
+    private ReaderLimits limits = ReaderLimits.DEFAULT;
+
+    /**
+     * Sets the resource limits the data has to stay within.
+     *
+     * @param limits The limits to check
+     * @return This validator for method chaining
+     * @see NBTReader#setLimits(ReaderLimits)
+     */
+    public NBTValidator setLimits(ReaderLimits limits)
+    {
+        if (limits == null)
+        {
+            throw new IllegalArgumentException("Reader limits cannot be null");
+        }
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Validates a NBT file, detecting its compression automatically.
+     *
+     * @param nbtFile The file to validate
+     * @return The validation result
+     * @throws IOException If the file cannot be opened
+     */
+    public Result validate(File nbtFile) throws IOException
+    {
+        try (DataInputStream dis = NBTFileHandler.loadNBTToReader(nbtFile))
+        {
+            return validate(new PositionTrackingDataInputStream(dis));
+        }
+    }
+
+    /**
+     * Validates uncompressed NBT data read from a stream. The stream is not closed.
+     *
+     * @param in The stream containing uncompressed NBT data
+     * @return The validation result
+     */
+    public Result validate(InputStream in)
+    {
+        return validate(new PositionTrackingDataInputStream(in));
+    }
+
+    /**
+     * Validates uncompressed NBT data held in a buffer, starting at its position. The buffer is not modified.
+     *
+     * @param data The buffer holding the uncompressed NBT data
+     * @return The validation result
+     */
+    public Result validate(ByteBuffer data)
+    {
+        return validate(new PositionTrackingDataInputStream(data));
+    }
+
+    private Result validate(PositionTrackingDataInputStream in)
+    {
+        try
+        {
+            in.setByteLimit(limits.getMaxTotalBytes());
+            return walk(in);
+        } catch (IOException e)
+        {
+            // The offset is reported separately, like for the problems found by walk()
+            return Result.invalid(in.getBytesRead(), PositionTrackingDataInputStream.baseMessage(e));
+        }
+    }
+
+    /**
+     * Walks the complete structure on an explicit stack.
+     * Each frame is either a compound ({@link #COMPOUND_FRAME}) or a list with its element type and remaining count.
+     */
+    private Result walk(PositionTrackingDataInputStream in) throws IOException
+    {
+        int type = in.readByte();
+        if (type != NBTTags.Tag_Compound.getId())
+        {
+            return Result.invalid(0, String.format("Root tag must be a compound but was type %d", type));
+        }
+        Result error = checkName(in);
+        if (error != null) return error;
+
+        int[] listTypes = new int[16];
+        int[] remaining = new int[16];
+        int top = 0;
+        listTypes[0] = COMPOUND_FRAME;
+        long elements = 1;
+
+        while (top >= 0)
+        {
+            long offset = in.getBytesRead();
+            if (listTypes[top] == COMPOUND_FRAME)
+            {
+                type = in.readByte();
+                if (type == NBTTags.Tag_End.getId())
+                {
+                    top--;
+                    continue;
+                }
+                if (NBTTags.getById(type) == null)
+                {
+                    return Result.invalid(offset, String.format("Unknown tag type: %d", type));
+                }
+                error = checkName(in);
+                if (error != null) return error;
+            } else
+            {
+                if (remaining[top] == 0)
+                {
+                    top--;
+                    continue;
+                }
+                remaining[top]--;
+                type = listTypes[top];
+            }
+
+            if (++elements > limits.getMaxElements())
+            {
+                return Result.invalid(offset, String.format("Input exceeds the limit of %d elements", limits.getMaxElements()));
+            }
+
+            if (type == NBTTags.Tag_Compound.getId() || type == NBTTags.Tag_List.getId())
+            {
+                if (top + 1 > limits.getMaxDepth())
+                {
+                    return Result.invalid(offset, String.format("Maximum nesting depth of %d exceeded", limits.getMaxDepth()));
+                }
+                int listType = COMPOUND_FRAME;
+                int count = 0;
+                if (type == NBTTags.Tag_List.getId())
+                {
+                    long headerOffset = in.getBytesRead();
+                    listType = in.readByte();
+                    if (NBTTags.getById(listType) == null)
+                    {
+                        return Result.invalid(headerOffset, String.format("Invalid list element type: %d", listType));
+                    }
+                    count = in.readInt();
+                    error = checkListLength(headerOffset + 1, listType, count);
+                    if (error != null) return error;
+                    if (count > limits.getMaxElements() - elements)
+                    {
+                        return Result.invalid(headerOffset + 1, String.format(
+                                "List of %d elements exceeds the limit of %d elements", count, limits.getMaxElements()));
+                    }
+                }
+                if (++top == listTypes.length)
+                {
+                    listTypes = Arrays.copyOf(listTypes, top * 2);
+                    remaining = Arrays.copyOf(remaining, top * 2);
+                }
+                listTypes[top] = listType;
+                remaining[top] = count;
+                continue;
+            }
+
+            error = checkLeaf(in, type);
+            if (error != null) return error;
+        }
+        return Result.VALID;
+    }
+
+    /**
+     * Steps over the payload of a tag that cannot contain other tags.
+     */
+    private Result checkLeaf(PositionTrackingDataInputStream in, int type) throws IOException
+    {
+        int fixedSize = NBTStructure.fixedPayloadSize(type);
+        if (fixedSize >= 0)
+        {
+            in.skipBytes(fixedSize);
+            return null;
+        }
+        long offset = in.getBytesRead();
+        return switch (NBTTags.getById(type))
+        {
+            case Tag_End -> null;
+            case Tag_String ->
+            {
+                int length = in.readUnsignedShort();
+                int malformed = in.validateUTF(length);
+                yield malformed < 0 ? null : Result.invalid(offset + 2 + malformed, "Malformed modified UTF-8 in string");
+            }
+            case Tag_Byte_Array -> skipArray(in, offset, "byte array", Byte.BYTES);
+            case Tag_Int_Array -> skipArray(in, offset, "int array", Integer.BYTES);
+            case Tag_Long_Array -> skipArray(in, offset, "long array", Long.BYTES);
+            case null, default -> Result.invalid(offset, String.format("Unknown tag type: %d", type));
+        };
+    }
+
+    private Result skipArray(PositionTrackingDataInputStream in, long offset, String kind, int elementSize) throws IOException
+    {
+        int length = in.readInt();
+        Result error = checkLength(offset, kind, length, elementSize);
+        if (error != null) return error;
+        in.skipBytes((long) length * elementSize);
+        return null;
+    }
+
+    private Result checkLength(long offset, String kind, int length, int elementSize)
+    {
+        if (length < 0)
+        {
+            return Result.invalid(offset, String.format("Invalid %s length: %d", kind, length));
+        }
+        if (length > limits.getMaxArrayLength())
+        {
+            return Result.invalid(offset, String.format("Invalid %s length: %d exceeds the limit of %d",
+                    kind, length, limits.getMaxArrayLength()));
+        }
+        if ((long) length * elementSize > limits.getMaxTotalBytes() - offset - 4)
+        {
+            return Result.invalid(offset, String.format("Invalid %s length: %d elements exceed the byte limit of %d",
+                    kind, length, limits.getMaxTotalBytes()));
+        }
+        return null;
+    }
+
+    private Result checkListLength(long offset, int listType, int count)
+    {
+        if (count < 0)
+        {
+            return Result.invalid(offset, String.format("Invalid list length: %d", count));
+        }
+        if (listType == NBTTags.Tag_End.getId() && count > 0)
+        {
+            return Result.invalid(offset, String.format(NBTStructure.TAG_END_LIST_MESSAGE, count));
+        }
+        if (count > limits.getMaxListLength())
+        {
+            return Result.invalid(offset, String.format("Invalid list length: %d exceeds the limit of %d",
+                    count, limits.getMaxListLength()));
+        }
+        if ((long) count * NBTStructure.minPayloadSize(listType) > limits.getMaxTotalBytes() - offset - 4)
+        {
+            return Result.invalid(offset, String.format("Invalid list length: %d elements exceed the byte limit of %d",
+                    count, limits.getMaxTotalBytes()));
+        }
+        return null;
+    }
+
+    private static Result checkName(PositionTrackingDataInputStream in) throws IOException
+    {
+        int length = in.readUnsignedShort();
+        long offset = in.getBytesRead();
+        int malformed = in.validateUTF(length);
+        return malformed < 0 ? null : Result.invalid(offset + malformed, "Malformed modified UTF-8 in tag name");
+    }
+
+    /**
+     * Outcome of a validation: either valid, or the first problem and where it was found.
+     */
+    public static final class Result
+    {
+        private static final Result VALID = new Result(-1, null);
+
+        private final long offset;
+        private final String message;
+
+        private Result(long offset, String message)
+        {
+            this.offset = offset;
+            this.message = message;
+        }
+
+        private static Result invalid(long offset, String message)
+        {
+            return new Result(offset, message);
+        }
+
+        /**
+         * Returns whether the data is well-formed NBT within the limits.
+         *
+         * @return {@code true} if no problem was found
+         */
+        public boolean isValid()
+        {
+            return message == null;
+        }
+
+        /**
+         * Returns the offset in the uncompressed data the problem was found at.
+         *
+         * @return The byte offset, or -1 if the data is valid
+         */
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        /**
+         * Returns a description of the problem.
+         *
+         * @return The problem, or {@code null} if the data is valid
+         */
+        public String getMessage()
+        {
+            return message;
+        }
+
+        @Override
+        public String toString()
+        {
+            return isValid() ? "Valid" : String.format("Invalid at byte %d: %s", offset, message);
+        }
+    }
+}
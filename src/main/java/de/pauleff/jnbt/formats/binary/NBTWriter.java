@@ -10,18 +10,43 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.UTFDataFormatException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.file.Files;
 import java.util.ArrayList;
 
 /**
  * Class for handling the writing of Java NBT to file.
  *
+ * <p>All targets share one encoding core: tags are encoded big-endian straight into a {@link ByteBuffer}.
+ * For files this is the array of the file's {@link NBTOutputBuffer}, sized by {@link WriterSettings#getBufferSize()},
+ * other streams get a small buffer handed on whenever it fills up, {@link #writeTo(ICompoundTag, ByteBuffer)}
+ * encodes into the caller's buffer, and {@link #writeTo(ICompoundTag, GatheringByteChannel)} fills a batch of direct
+ * chunks that are written with a single gathering write.</p>
+ *
  * @author Paul Ferlitz
  */
 public class NBTWriter implements INBTWriter
 {
-    private final DataOutputStream stream;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_PENDING_CHUNKS = 16;
+    /**
+     * First chunk of every channel write, kept per thread so encoding small trees, e.g. one per network packet,
+     * allocates no native memory. Further chunks for larger trees are allocated per call.
+     */
+    private static final ThreadLocal<ByteBuffer> FIRST_CHUNK = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK_SIZE));
+
+    private final DataOutputStream stream; // null when encoding into memory or a channel
+    private NBTOutputBuffer fileBuffer; // The file pipeline's buffer when encoding into it directly
+    private GatheringByteChannel channel;
+    private ByteBuffer[] chunks;
+    private int pendingChunks;
+    private long channelBytes;
+    private ByteBuffer out;
+    private byte[] scratch = new byte[0];
 
     /**
      * Create a writer by passing it the target NBT file.
@@ -63,6 +88,25 @@ public class NBTWriter implements INBTWriter
         }
     }
 
+    /**
+     * Create a writer by passing it the target NBT file, how to compress it and how to tune the output pipeline.
+     * If the target file exists, it is backed up and saved in place or atomically as configured by the settings.
+     *
+     * @param nbtFile     The target NBT file.
+     * @param compression The compression type of the file.
+     * @param settings    The buffer sizes, compression level and save behaviour to write with.
+     */
+    public NBTWriter(File nbtFile, Compression_Types compression, WriterSettings settings)
+    {
+        try
+        {
+            this.stream = NBTFileHandler.loadNBTToWriter(nbtFile, compression, settings);
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Create a writer by passing it the target NBT file as a {@link DataOutputStream}.
      *
@@ -73,6 +117,121 @@ public class NBTWriter implements INBTWriter
         this.stream = dos;
     }
 
+    /**
+     * Create a writer encoding into a fixed buffer.
+     *
+     * @param target The big-endian buffer to encode into, starting at its position
+     */
+    private NBTWriter(ByteBuffer target)
+    {
+        this.stream = null;
+        this.out = target;
+    }
+
+    /**
+     * Create a writer encoding into chunks that are written to a channel in batches.
+     *
+     * @param channel The channel to write to
+     */
+    private NBTWriter(GatheringByteChannel channel)
+    {
+        this.stream = null;
+        this.channel = channel;
+        this.chunks = new ByteBuffer[MAX_PENDING_CHUNKS];
+        this.out = chunks[0] = FIRST_CHUNK.get().clear();
+    }
+
+    /**
+     * Encodes a tree into a buffer, starting at its position, e.g. a pooled packet buffer.
+     * On success the position is advanced past the encoded data, which is written big-endian regardless of the
+     * buffer's byte order. The buffer can be heap or direct, {@link NBTSizes#sizeOf(ITag)} tells the space needed.
+     *
+     * @param root   The root {@link ICompoundTag} to encode
+     * @param target The buffer to encode into
+     * @throws IOException              If the tree is invalid
+     * @throws BufferOverflowException  If the tree doesn't fit, the buffer's position is left unchanged then
+     * @throws IllegalArgumentException If root is null
+     */
+    public static void writeTo(ICompoundTag root, ByteBuffer target) throws IOException
+    {
+        ByteBuffer slice = target.slice(); // Always big-endian
+        new NBTWriter(slice).write(root);
+        target.position(target.position() + slice.position());
+    }
+
+    /**
+     * Encodes a tree and writes it to a blocking channel, e.g. a socket or file channel.
+     * The data is encoded into direct chunks, each batch of which is handed to the channel in a single gathering write.
+     * The first chunk is reused by later calls on the same thread, so trees of up to 64 KiB allocate no native memory.
+     * The channel is not closed.
+     *
+     * @param root    The root {@link ICompoundTag} to encode
+     * @param channel The channel to write to
+     * @return The number of bytes written
+     * @throws IOException              If the tree is invalid or the channel cannot be written
+     * @throws IllegalArgumentException If root is null
+     */
+    public static long writeTo(ICompoundTag root, GatheringByteChannel channel) throws IOException
+    {
+        NBTWriter writer = new NBTWriter(channel);
+        writer.write(root);
+        return writer.channelBytes;
+    }
+
+    /**
+     * Encodes a tree into a byte array of exactly its encoded size, see {@link NBTSizes#sizeOf(ITag)}.
+     * The array is allocated once and never grown or copied.
+     *
+     * @param root The root {@link ICompoundTag} to encode
+     * @return The uncompressed binary NBT
+     * @throws IOException              If the tree is invalid or too large for a single array
+     * @throws IllegalArgumentException If root is null
+     */
+    public static byte[] toByteArray(ICompoundTag root) throws IOException
+    {
+        byte[] bytes = new byte[exactSize(root)];
+        encodeExactly(root, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Encodes a tree into a direct buffer of exactly its encoded size, e.g. to hand it to a channel without copying.
+     *
+     * @param root The root {@link ICompoundTag} to encode
+     * @return The uncompressed binary NBT, positioned at 0 with its limit at the end of the data
+     * @throws IOException              If the tree is invalid or too large for a single buffer
+     * @throws IllegalArgumentException If root is null
+     */
+    public static ByteBuffer toDirectBuffer(ICompoundTag root) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(exactSize(root));
+        encodeExactly(root, buffer);
+        return buffer.flip();
+    }
+
+    private static int exactSize(ICompoundTag root) throws IOException
+    {
+        if (root == null)
+        {
+            throw new IllegalArgumentException("Root compound tag cannot be null");
+        }
+        long size = NBTSizes.sizeOf(root);
+        if (size > Integer.MAX_VALUE - 8)
+        {
+            throw new IOException(String.format("Encoded size of %d bytes exceeds the maximum array size", size));
+        }
+        return (int) size;
+    }
+
+    private static void encodeExactly(ICompoundTag root, ByteBuffer target) throws IOException
+    {
+        writeTo(root, target);
+        if (target.hasRemaining())
+        {
+            throw new IOException(String.format("Encoded %d bytes less than computed", target.remaining()));
+        }
+    }
+
     /**
      * Method to close the writer.
      *
@@ -80,7 +239,10 @@ public class NBTWriter implements INBTWriter
      */
     public void close() throws IOException
     {
-        stream.close();
+        if (stream != null)
+        {
+            stream.close();
+        }
     }
 
     /**
@@ -97,14 +259,24 @@ public class NBTWriter implements INBTWriter
         {
             throw new IllegalArgumentException("Root compound tag cannot be null");
         }
+        if (out == null)
+        {
+            out = encodeBuffer();
+        }
         try
         {
             writeNBTTag(root);
+            flush();
+        } catch (BufferOverflowException e)
+        {
+            throw e; // The fixed target buffer is too small
         } catch (IOException e)
         {
+            discardPending();
             throw e; // Re-throw IOException directly
         } catch (Exception e)
         {
+            discardPending();
             throw new IOException("Failed to write NBT data: " + e.getMessage(), e);
         } finally
         {
@@ -112,15 +284,39 @@ public class NBTWriter implements INBTWriter
         }
     }
 
-    private void writeNBTTag(ITag<?> tag) throws IOException
+    /**
+     * Picks the buffer to encode into for a stream: the array of a file's output buffer where it can hold
+     * every primitive, so nothing is copied before compression, otherwise a buffer of our own.
+     */
+    private ByteBuffer encodeBuffer()
+    {
+        if (stream instanceof NBTFileHandler.PendingOutputStream pending)
+        {
+            ByteBuffer buffer = pending.buffer().encodeBuffer();
+            if (buffer.remaining() >= Long.BYTES)
+            {
+                fileBuffer = pending.buffer();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /**
+     * Keeps a failed atomic save from replacing the target file when the writer is closed.
+     */
+    private void discardPending()
     {
-        String name = tag.getName();
-        // TODO: Extract charsets to main location
-        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (stream instanceof NBTFileHandler.PendingOutputStream pending)
+        {
+            pending.discard();
+        }
+    }
 
-        stream.writeByte(tag.getId());
-        stream.writeShort(nameBytes.length);
-        stream.write(nameBytes);
+    private void writeNBTTag(ITag<?> tag) throws IOException
+    {
+        putByte(tag.getId());
+        writeUTF(tag.getName());
 
         writeNBTPayload(tag);
     }
@@ -133,39 +329,37 @@ public class NBTWriter implements INBTWriter
                 // Do nothing! Handled by compound.
                 break;
             case NBTTags.Tag_Byte:
-                stream.writeByte((byte) tag.getData());
+                putByte((byte) tag.getData());
                 break;
             case NBTTags.Tag_Short:
-                stream.writeShort((short) tag.getData());
+                putShort((short) tag.getData());
                 break;
             case NBTTags.Tag_Int:
-                stream.writeInt((int) tag.getData());
+                putInt((int) tag.getData());
                 break;
             case NBTTags.Tag_Long:
-                stream.writeLong((long) tag.getData());
+                putLong((long) tag.getData());
                 break;
             case NBTTags.Tag_Float:
-                stream.writeFloat((float) tag.getData());
+                putFloat((float) tag.getData());
                 break;
             case NBTTags.Tag_Double:
-                stream.writeDouble((double) tag.getData());
+                putDouble((double) tag.getData());
                 break;
             case NBTTags.Tag_Byte_Array:
                 byte[] bytes = (byte[]) tag.getData();
-                stream.writeInt(bytes.length);
-                stream.write(bytes);
+                putInt(bytes.length);
+                writeBytes(bytes, 0, bytes.length);
                 break;
             case NBTTags.Tag_String:
-                bytes = ((String) tag.getData()).getBytes(StandardCharsets.UTF_8);
-                stream.writeShort(bytes.length);
-                stream.write(bytes);
+                writeUTF((String) tag.getData());
                 break;
             case NBTTags.Tag_List:
                 ArrayList<ITag<?>> listTags = (ArrayList<ITag<?>>) tag.getData();
                 int size = listTags.size();
 
-                stream.writeByte(((IListTag) tag).getListTypeID());
-                stream.writeInt(size);
+                putByte(((IListTag) tag).getListTypeID());
+                putInt(size);
                 for (int i = 0; i < size; i++)
                 {
                     writeNBTPayload(listTags.get(i));
@@ -177,29 +371,278 @@ public class NBTWriter implements INBTWriter
                     writeNBTTag(compTag);
                 }
                 // Simulate Tag_End
-                stream.writeByte((byte) 0);
+                putByte(0);
                 break;
             case NBTTags.Tag_Int_Array:
                 int[] intArray = (int[]) tag.getData();
-                size = intArray.length;
-                stream.writeInt(size);
-                for (int i = 0; i < size; i++)
-                {
-                    stream.writeInt(intArray[i]);
-                }
+                putInt(intArray.length);
+                writeInts(intArray);
                 break;
             case NBTTags.Tag_Long_Array:
                 long[] longArray = (long[]) tag.getData();
-                size = longArray.length;
-                stream.writeInt(size);
-                for (int i = 0; i < size; i++)
-                {
-                    stream.writeLong(longArray[i]);
-                }
+                putInt(longArray.length);
+                writeLongs(longArray);
                 break;
             case null:
             default:
                 throw new IOException("Invalid tag type: " + tag.getId() + ".");
         }
     }
+
+    /*
+     * ========== ENCODING CORE, SHARED WITH NBTStreamWriter ==========
+     */
+
+    /**
+     * Prepares a stream writer for encoding tag by tag instead of through {@link #write(ICompoundTag)}.
+     *
+     * @return This writer
+     */
+    NBTWriter beginStream()
+    {
+        if (out == null)
+        {
+            out = encodeBuffer();
+        }
+        return this;
+    }
+
+    void putByte(int value) throws IOException
+    {
+        ensure(Byte.BYTES);
+        out.put((byte) value);
+    }
+
+    void putShort(short value) throws IOException
+    {
+        ensure(Short.BYTES);
+        out.putShort(value);
+    }
+
+    void putInt(int value) throws IOException
+    {
+        ensure(Integer.BYTES);
+        out.putInt(value);
+    }
+
+    void putLong(long value) throws IOException
+    {
+        ensure(Long.BYTES);
+        out.putLong(value);
+    }
+
+    void putFloat(float value) throws IOException
+    {
+        ensure(Float.BYTES);
+        out.putFloat(value);
+    }
+
+    void putDouble(double value) throws IOException
+    {
+        ensure(Double.BYTES);
+        out.putDouble(value);
+    }
+
+    /**
+     * Makes sure the encoding buffer has room for a primitive of the given size.
+     */
+    private void ensure(int bytes) throws IOException
+    {
+        if (out.remaining() < bytes)
+        {
+            drain();
+        }
+    }
+
+    /**
+     * Hands the encoded bytes on to make room in the encoding buffer.
+     * Streams receive the buffer's contents, channels get it queued as a chunk and a fixed buffer is simply full.
+     *
+     * @throws IOException              If the stream or channel cannot be written
+     * @throws BufferOverflowException If encoding into a fixed buffer that is full
+     */
+    private void drain() throws IOException
+    {
+        if (fileBuffer != null)
+        {
+            fileBuffer.drain(out);
+        } else if (stream != null)
+        {
+            stream.write(out.array(), out.arrayOffset(), out.position());
+            out.clear();
+        } else if (channel != null)
+        {
+            queueChunk();
+            if (chunks[pendingChunks] == null)
+            {
+                chunks[pendingChunks] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            }
+            out = chunks[pendingChunks];
+        } else
+        {
+            throw new BufferOverflowException();
+        }
+    }
+
+    /**
+     * Hands everything still buffered on once the tree has been encoded, or whenever a stream writer is flushed.
+     */
+    void flush() throws IOException
+    {
+        if (stream != null)
+        {
+            drain();
+        } else if (channel != null)
+        {
+            queueChunk(); // The last chunk, no need for another one
+            writeChunks();
+        }
+    }
+
+    /**
+     * Queues the current chunk for the next gathering write, writing the batch once it is full.
+     */
+    private void queueChunk() throws IOException
+    {
+        out.flip();
+        if (++pendingChunks == MAX_PENDING_CHUNKS)
+        {
+            writeChunks();
+        }
+    }
+
+    /**
+     * Writes all queued chunks with a single gathering write, repeated until the channel took everything.
+     */
+    private void writeChunks() throws IOException
+    {
+        if (pendingChunks == 0)
+        {
+            return;
+        }
+        while (chunks[pendingChunks - 1].hasRemaining())
+        {
+            channelBytes += channel.write(chunks, 0, pendingChunks);
+        }
+        for (int i = 0; i < pendingChunks; i++)
+        {
+            chunks[i].clear();
+        }
+        pendingChunks = 0;
+    }
+
+    /**
+     * Copies bytes into the encoding buffer, draining it as often as needed.
+     * Blocks at least as large as the buffer bypass it when writing to a stream.
+     */
+    void writeBytes(byte[] bytes, int offset, int length) throws IOException
+    {
+        if (stream != null && length >= out.capacity())
+        {
+            drain();
+            stream.write(bytes, offset, length);
+            return;
+        }
+        while (length > 0)
+        {
+            if (!out.hasRemaining())
+            {
+                drain();
+            }
+            int count = Math.min(length, out.remaining());
+            out.put(bytes, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Returns the encoded length of a string, checking that it fits the length prefix.
+     *
+     * @param value The string to measure
+     * @return The encoded length in bytes
+     * @throws UTFDataFormatException When the encoded string is longer than 65535 bytes
+     */
+    static int utfLength(String value) throws UTFDataFormatException
+    {
+        int length = ModifiedUTF8.encodedLength(value);
+        if (length > ModifiedUTF8.MAX_ENCODED_LENGTH)
+        {
+            throw new UTFDataFormatException(String.format("Encoded string too long: %d bytes", length));
+        }
+        return length;
+    }
+
+    private void writeUTF(String value) throws IOException
+    {
+        writeUTF(value, utfLength(value));
+    }
+
+    /**
+     * Encodes a length-prefixed modified UTF-8 string, in place where the encoding buffer is backed by an array.
+     *
+     * @param value  The string to write
+     * @param length Its encoded length as returned by {@link #utfLength(String)}
+     * @throws IOException When writing fails
+     */
+    void writeUTF(String value, int length) throws IOException
+    {
+        if (out.remaining() < length + 2 && out.capacity() >= length + 2)
+        {
+            drain();
+        }
+        if (out.hasArray() && out.remaining() >= length + 2)
+        {
+            out.putShort((short) length);
+            ModifiedUTF8.encode(value, out.array(), out.arrayOffset() + out.position());
+            out.position(out.position() + length);
+            return;
+        }
+        if (scratch.length < length + 2)
+        {
+            scratch = new byte[Math.max(length + 2, 64)];
+        }
+        scratch[0] = (byte) (length >>> 8);
+        scratch[1] = (byte) length;
+        ModifiedUTF8.encode(value, scratch, 2);
+        writeBytes(scratch, 0, length + 2);
+    }
+
+    /**
+     * Encodes an int array big-endian straight into the encoding buffer, one bulk copy per buffer fill.
+     *
+     * @param values The values to write
+     * @throws IOException When encountering an error whilst writing
+     */
+    void writeInts(int[] values) throws IOException
+    {
+        int offset = 0;
+        while (offset < values.length)
+        {
+            ensure(Integer.BYTES);
+            int count = Math.min(out.remaining() / Integer.BYTES, values.length - offset);
+            out.asIntBuffer().put(values, offset, count);
+            out.position(out.position() + count * Integer.BYTES);
+            offset += count;
+        }
+    }
+
+    /**
+     * Encodes a long array big-endian straight into the encoding buffer, one bulk copy per buffer fill.
+     *
+     * @param values The values to write
+     * @throws IOException When encountering an error whilst writing
+     */
+    void writeLongs(long[] values) throws IOException
+    {
+        int offset = 0;
+        while (offset < values.length)
+        {
+            ensure(Long.BYTES);
+            int count = Math.min(out.remaining() / Long.BYTES, values.length - offset);
+            out.asLongBuffer().put(values, offset, count);
+            out.position(out.position() + count * Long.BYTES);
+            offset += count;
+        }
+    }
 }
@@ -0,0 +1,359 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.api.INBTReader;
+import de.pauleff.jnbt.core.Tag;
+import de.pauleff.jnbt.core.Tag_Compound;
+import de.pauleff.jnbt.util.NBTTags;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reader that decodes the children of large compounds in parallel.
+ * The uncompressed data is first scanned structurally: the entries of the root compound are located by skipping
+ * their payloads by length, without creating tags. The entries are then grouped into slices of roughly
+ * {@link #setMinSliceSize(int)} bytes which are decoded on a {@link ForkJoinPool} and put back together
+ * in their original order, so the result is identical to {@link NBTReader#read()}.
+ *
+ * <p>With a split depth above 1, compounds nested below the root are split the same way, which helps files whose
+ * bulk sits in a single child such as a schematic's {@code "Schematic"} compound. Only worth it for large inputs,
+ * small files are faster with a plain {@link NBTReader}.</p>
+ *
+ * <p>{@link ReaderLimits} apply to the whole input just like with {@link NBTReader}: the slices share one byte
+ * and element budget and check the nesting depth relative to the root.</p>
+ *
+ * @author Paul Ferlitz
+ */
+public class ParallelNBTReader implements INBTReader
+{
+    /**
+     * Default number of bytes below which neighbouring entries are decoded together in one task.
+     */
+    public static final int DEFAULT_MIN_SLICE_SIZE = 256 * 1024;
+
+    private final File file;
+    private ByteBuffer source;
+    private ReaderLimits limits = ReaderLimits.DEFAULT;
+    private AtomicLong elements;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int splitDepth = 1;
+    private int minSliceSize = DEFAULT_MIN_SLICE_SIZE;
+
+    /**
+     * Create a reader by passing it the target NBT file.
+     * The file is opened once by {@link #read()}: uncompressed files are memory-mapped,
+     * compressed files are inflated into memory first, at most up to {@link ReaderLimits#getMaxTotalBytes()}.
+     *
+     * @param nbtFile The target NBT file.
+     * @throws FileNotFoundException If the file doesn't exist.
+     */
+    public ParallelNBTReader(File nbtFile) throws FileNotFoundException
+    {
+        if (Files.notExists(nbtFile.toPath()))
+        {
+            throw new FileNotFoundException(String.format("The file %s doesn't exist!", nbtFile.getPath()));
+        }
+        this.file = nbtFile;
+    }
+
+    /**
+     * Create a reader over uncompressed NBT data held in memory.
+     * The buffer is read from its current position and must not be modified while reading.
+     *
+     * @param data The buffer holding the uncompressed NBT data.
+     */
+    public ParallelNBTReader(ByteBuffer data)
+    {
+        this.file = null;
+        this.source = data.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Sets the resource limits enforced by {@link #read()}, see {@link NBTReader#setLimits(ReaderLimits)}.
+     *
+     * @param limits The limits to enforce
+     * @return This reader for method chaining
+     * @throws IllegalArgumentException If the limits are {@code null}
+     */
+    public ParallelNBTReader setLimits(ReaderLimits limits)
+    {
+        if (limits == null)
+        {
+            throw new IllegalArgumentException("Reader limits cannot be null");
+        }
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Sets the pool the slices are decoded on, by default the {@link ForkJoinPool#commonPool()}.
+     *
+     * @param pool The pool to decode on
+     * @return This reader for method chaining
+     */
+    public ParallelNBTReader setPool(ForkJoinPool pool)
+    {
+        if (pool == null)
+        {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Sets how many compound levels are split into parallel slices.
+     * With 1 (the default) the children of the root compound are decoded in parallel, with 2 the children
+     * of compounds directly below the root are split as well, and so on.
+     *
+     * @param splitDepth The number of levels to split, at least 1
+     * @return This reader for method chaining
+     */
+    public ParallelNBTReader setSplitDepth(int splitDepth)
+    {
+        if (splitDepth < 1)
+        {
+            throw new IllegalArgumentException("Split depth must be at least 1: " + splitDepth);
+        }
+        this.splitDepth = splitDepth;
+        return this;
+    }
+
+    /**
+     * Sets how many bytes of neighbouring entries are grouped into one task at least.
+     * Bigger slices mean less scheduling overhead, smaller slices a better load balance.
+     *
+     * @param minSliceSize The minimum slice size in bytes
+     * @return This reader for method chaining
+     */
+    public ParallelNBTReader setMinSliceSize(int minSliceSize)
+    {
+        if (minSliceSize < 1)
+        {
+            throw new IllegalArgumentException("Minimum slice size must be positive: " + minSliceSize);
+        }
+        this.minSliceSize = minSliceSize;
+        return this;
+    }
+
+    /**
+     * Parses the NBT data in parallel and returns the root compound tag.
+     *
+     * @return The root {@link ICompoundTag} containing the complete NBT structure
+     * @throws IOException If the data is corrupted or doesn't follow NBT specification
+     */
+    @Override
+    public ICompoundTag read() throws IOException
+    {
+        if (source == null)
+        {
+            source = NBTFileHandler.loadNBTToBuffer(file, limits.getMaxTotalBytes()).asReadOnlyBuffer();
+        }
+        elements = new AtomicLong();
+        PositionTrackingDataInputStream stream = streamAt(0);
+        int type = stream.readByte();
+        if (type != NBTTags.Tag_Compound.getId())
+        {
+            throw new IOException(stream.createContextualError(
+                    String.format("Root tag must be a compound but was type %d", type)));
+        }
+        String name = readName(stream);
+
+        Tag<?>[] root = new Tag<?>[1];
+        try
+        {
+            pool.invoke(new CompoundTask(name, (int) stream.getBytesRead(), 0, root, 0));
+        } catch (UncheckedIOException e)
+        {
+            throw new IOException(e.getMessage(), e.getCause());
+        }
+        return (Tag_Compound) root[0];
+    }
+
+    /**
+     * Method to close the reader.
+     * A mapped file is released by the JVM once it is no longer referenced.
+     */
+    @Override
+    public void close()
+    {
+    }
+
+    /**
+     * Opens a stream at an absolute offset of the source, so the byte limit counts from the start of the input.
+     */
+    private PositionTrackingDataInputStream streamAt(int offset) throws IOException
+    {
+        PositionTrackingDataInputStream stream = new PositionTrackingDataInputStream(source.duplicate().position(0));
+        stream.setByteLimit(limits.getMaxTotalBytes());
+        stream.skipBytes(offset);
+        return stream;
+    }
+
+    private static String readName(PositionTrackingDataInputStream stream) throws IOException
+    {
+        return stream.readUTF(stream.readUnsignedShort(), NBTNameCache.shared());
+    }
+
+    /**
+     * Scans the entries of one compound and decodes them as parallel slices.
+     * Tasks are never serialized, so they don't declare a serialVersionUID.
+     */
+    @SuppressWarnings("serial")
+    private final class CompoundTask extends RecursiveAction
+    {
+        private final String name;
+        private final int bodyOffset;
+        private final int depth;
+        private final Tag<?>[] target;
+        private final int slot;
+
+        private CompoundTask(String name, int bodyOffset, int depth, Tag<?>[] target, int slot)
+        {
+            this.name = name;
+            this.bodyOffset = bodyOffset;
+            this.depth = depth;
+            this.target = target;
+            this.slot = slot;
+        }
+
+        @Override
+        protected void compute()
+        {
+            try
+            {
+                computeChecked();
+            } catch (IOException e)
+            {
+                throw new UncheckedIOException(String.format("Failed to scan compound '%s' at byte %d: %s",
+                        name, bodyOffset, e.getMessage()), e);
+            }
+        }
+
+        private void computeChecked() throws IOException
+        {
+            PositionTrackingDataInputStream stream = streamAt(bodyOffset);
+            stream.setCurrentContext(depth, name, NBTTags.Tag_Compound.getId());
+            if (depth > limits.getMaxDepth())
+            {
+                throw new IOException(stream.createContextualError(
+                        String.format("Maximum nesting depth of %d exceeded", limits.getMaxDepth())));
+            }
+            if (elements.incrementAndGet() > limits.getMaxElements())
+            {
+                throw new IOException(stream.createContextualError(
+                        String.format("Input exceeds the limit of %d elements", limits.getMaxElements())));
+            }
+            int count = 0;
+            String[] names = new String[16];
+            int[] types = new int[16];
+            int[] offsets = new int[17];
+            while (true)
+            {
+                int type = stream.readByte();
+                if (type == NBTTags.Tag_End.getId()) break;
+                String childName = readName(stream);
+                stream.setCurrentContext(depth + 1, childName, type);
+                if (count == names.length)
+                {
+                    names = Arrays.copyOf(names, count * 2);
+                    types = Arrays.copyOf(types, count * 2);
+                    offsets = Arrays.copyOf(offsets, count * 2 + 1);
+                }
+                names[count] = childName;
+                types[count] = type;
+                offsets[count] = (int) stream.getBytesRead();
+                NBTStructure.skipPayload(stream, type);
+                count++;
+            }
+            // Offset after the last payload, to measure the size of the last entry
+            offsets[count] = (int) stream.getBytesRead() - 1;
+
+            Tag<?>[] children = new Tag<?>[count];
+            List<RecursiveAction> tasks = new ArrayList<>();
+            int sliceStart = 0;
+            for (int i = 0; i < count; i++)
+            {
+                boolean split = types[i] == NBTTags.Tag_Compound.getId() && depth + 1 < splitDepth;
+                if (split || offsets[i + 1] - offsets[sliceStart] >= minSliceSize)
+                {
+                    int sliceEnd = split ? i : i + 1;
+                    if (sliceEnd > sliceStart)
+                    {
+                        tasks.add(new SliceTask(names, types, offsets, sliceStart, sliceEnd, depth + 1, children));
+                    }
+                    if (split)
+                    {
+                        tasks.add(new CompoundTask(names[i], offsets[i], depth + 1, children, i));
+                    }
+                    sliceStart = i + 1;
+                }
+            }
+            if (count > sliceStart)
+            {
+                tasks.add(new SliceTask(names, types, offsets, sliceStart, count, depth + 1, children));
+            }
+            invokeAll(tasks);
+
+            target[slot] = new Tag_Compound(name, new ArrayList<>(Arrays.asList(children)));
+        }
+    }
+
+    /**
+     * Decodes a run of neighbouring entries with a single reader, stepping over the entry headers in between.
+     */
+    @SuppressWarnings("serial")
+    private final class SliceTask extends RecursiveAction
+    {
+        private final String[] names;
+        private final int[] types;
+        private final int[] offsets;
+        private final int from;
+        private final int to;
+        private final int depth;
+        private final Tag<?>[] children;
+
+        private SliceTask(String[] names, int[] types, int[] offsets, int from, int to, int depth, Tag<?>[] children)
+        {
+            this.names = names;
+            this.types = types;
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.children = children;
+        }
+
+        @Override
+        protected void compute()
+        {
+            int i = from;
+            try
+            {
+                PositionTrackingDataInputStream stream = streamAt(offsets[from]);
+                NBTReader reader = new NBTReader(stream).setLimits(limits).shareElements(elements);
+                for (; i < to; i++)
+                {
+                    stream.skipBytes(offsets[i] - stream.getBytesRead());
+                    children[i] = reader.readPayload(types[i], names[i], depth);
+                }
+                reader.flushSharedElements();
+            } catch (IOException e)
+            {
+                throw new UncheckedIOException(String.format("Failed to decode tag '%s' at byte %d: %s",
+                        names[Math.min(i, to - 1)], offsets[Math.min(i, to - 1)], e.getMessage()), e);
+            }
+        }
+    }
+}
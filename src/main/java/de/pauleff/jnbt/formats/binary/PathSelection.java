@@ -0,0 +1,123 @@
+package de.pauleff.jnbt.formats.binary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tree of dot-separated tag paths (e.g. "Data.Player.Pos") used to read only parts of a file.
+ * Each node stands for one compound entry, a leaf selects the entry's complete subtree.
+ *
+ * <p>Paths use the same syntax as {@link NBTIndex}: names containing {@code '.'}, {@code '['}, {@code ']'} or
+ * {@code '\\'} are escaped with a backslash, see {@link NBTIndex#escapeName(String)}. As selections only descend
+ * through compounds, list indices like {@code "Entities[3]"} are rejected.</p>
+ *
+ * @author Paul Ferlitz
+ */
+final class PathSelection
+{
+    private final Map<String, PathSelection> children = new HashMap<>();
+    private boolean leaf;
+
+    private PathSelection()
+    {
+    }
+
+    /**
+     * Builds a selection tree from paths relative to the root compound.
+     *
+     * @param paths The dot-separated paths to select
+     * @return The root node of the selection
+     * @throws IllegalArgumentException If a path is null, empty or malformed
+     */
+    static PathSelection of(Collection<String> paths)
+    {
+        PathSelection root = new PathSelection();
+        for (String path : paths)
+        {
+            PathSelection current = root;
+            for (String part : parse(path))
+            {
+                current = current.children.computeIfAbsent(part, k -> new PathSelection());
+            }
+            current.leaf = true;
+        }
+        return root;
+    }
+
+    /**
+     * Splits a path into the unescaped names of its segments.
+     *
+     * @param path The dot-separated path
+     * @return The names along the path
+     * @throws IllegalArgumentException If the path is null or empty, has an empty segment, an invalid escape
+     *                                  or a list index
+     */
+    static List<String> parse(String path)
+    {
+        if (path == null || path.isEmpty())
+        {
+            throw new IllegalArgumentException("Tag path cannot be null or empty");
+        }
+        List<String> names = new ArrayList<>();
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < path.length(); i++)
+        {
+            char c = path.charAt(i);
+            switch (c)
+            {
+                case '\\' ->
+                {
+                    char escaped = i + 1 < path.length() ? path.charAt(++i) : 0;
+                    if (escaped != '.' && escaped != '[' && escaped != ']' && escaped != '\\')
+                    {
+                        throw new IllegalArgumentException(String.format("Invalid escape at index %d of tag path '%s'", i, path));
+                    }
+                    name.append(escaped);
+                }
+                case '.' ->
+                {
+                    names.add(segment(name, path));
+                    name.setLength(0);
+                }
+                case '[', ']' -> throw new IllegalArgumentException(String.format(
+                        "Tag path '%s' contains a list index, only compound entries can be selected", path));
+                default -> name.append(c);
+            }
+        }
+        names.add(segment(name, path));
+        return names;
+    }
+
+    private static String segment(StringBuilder name, String path)
+    {
+        if (name.isEmpty())
+        {
+            throw new IllegalArgumentException(String.format("Tag path '%s' contains an empty name", path));
+        }
+        return name.toString();
+    }
+
+    /**
+     * Looks up the selection for a child entry.
+     *
+     * @param name The name of the child entry
+     * @return The child's selection, or {@code null} if the child isn't selected at all
+     */
+    PathSelection child(String name)
+    {
+        return children.get(name);
+    }
+
+    /**
+     * Returns whether the complete subtree below this node is selected.
+     *
+     * @return {@code true} for the last element of a selected path
+     */
+    boolean isLeaf()
+    {
+        return leaf;
+    }
+}
@@ -1,32 +1,119 @@
 package de.pauleff.jnbt.formats.binary;
 
-import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
- * Enhanced DataInputStream wrapper that tracks read position for better error reporting.
+ * Buffered big-endian input layer that tracks read position for better error reporting.
+ * Pulls data from the underlying stream in large blocks and decodes primitives directly out of
+ * an internal {@link ByteBuffer}, so a single read call on the source serves many tags.
  * Provides detailed context about where in the stream parsing errors occur.
  *
  * @author Paul Ferlitz
  */
 public class PositionTrackingDataInputStream
 {
-    private final DataInputStream dataStream;
-    private long bytesRead;
+    /**
+     * Default size of the internal read buffer in bytes.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_BUFFER_SIZE = 16;
+
+    private InputStream source;
+    private ByteBuffer buffer;
+    private ByteBuffer readBuffer;
+    private long bufferOffset;
+    private long byteLimit = Long.MAX_VALUE;
+    private byte[] scratch = new byte[0];
+    private byte[] staged;
     private int tagDepth;
     private String currentTagName;
     private int currentTagType;
 
     /**
-     * Creates a position tracking input stream.
+     * Creates a position tracking input stream with the default buffer size.
      *
      * @param in The underlying input stream to wrap
      */
     public PositionTrackingDataInputStream(InputStream in)
     {
-        this.dataStream = (in instanceof DataInputStream) ? (DataInputStream) in : new DataInputStream(in);
-        this.bytesRead = 0;
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a position tracking input stream with a custom buffer size.
+     *
+     * @param in         The underlying input stream to wrap
+     * @param bufferSize Size of the internal read buffer in bytes
+     */
+    public PositionTrackingDataInputStream(InputStream in, int bufferSize)
+    {
+        this.readBuffer = ByteBuffer.allocate(Math.max(bufferSize, MIN_BUFFER_SIZE)).order(ByteOrder.BIG_ENDIAN);
+        init(in);
+    }
+
+    /**
+     * Creates a position tracking input over an in-memory buffer, for example a memory-mapped file.
+     * The buffer is read from its current position to its limit and is never modified.
+     *
+     * @param data The buffer holding the complete NBT data
+     */
+    public PositionTrackingDataInputStream(ByteBuffer data)
+    {
+        init(data);
+    }
+
+    /**
+     * Points this stream at a new source, keeping the internal read buffer and scratch space.
+     * The previous source is not closed. Position, byte limit and error context start over.
+     *
+     * @param in The underlying input stream to read from next
+     */
+    public void reset(InputStream in)
+    {
+        init(in);
+    }
+
+    /**
+     * Points this stream at a new in-memory buffer, keeping the scratch space.
+     * The buffer is read from its current position to its limit and is never modified.
+     * The previous source is not closed. Position, byte limit and error context start over.
+     *
+     * @param data The buffer holding the complete NBT data
+     */
+    public void reset(ByteBuffer data)
+    {
+        init(data);
+    }
+
+    // Shared by the constructors and reset(), so subclasses overriding reset() don't see a half-built stream
+    private void init(InputStream in)
+    {
+        if (readBuffer == null)
+        {
+            readBuffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        }
+        this.source = in;
+        this.buffer = readBuffer;
+        this.buffer.clear().limit(0);
+        resetState();
+    }
+
+    private void init(ByteBuffer data)
+    {
+        this.source = null;
+        this.buffer = data.slice().order(ByteOrder.BIG_ENDIAN);
+        resetState();
+    }
+
+    private void resetState()
+    {
+        this.bufferOffset = 0;
+        this.byteLimit = Long.MAX_VALUE;
         this.tagDepth = 0;
         this.currentTagName = "";
         this.currentTagType = -1;
@@ -34,75 +121,308 @@ public class PositionTrackingDataInputStream
 
     public void readFully(byte[] b) throws IOException
     {
-        dataStream.readFully(b);
-        bytesRead += b.length;
+        readFully(b, 0, b.length);
     }
 
     public void readFully(byte[] b, int off, int len) throws IOException
     {
-        dataStream.readFully(b, off, len);
-        bytesRead += len;
+        int buffered = Math.min(buffer.remaining(), len);
+        buffer.get(b, off, buffered);
+        off += buffered;
+        len -= buffered;
+
+        // Large payloads bypass the buffer and go straight from the source into the target array
+        if (source != null && len >= buffer.capacity() && len > byteLimit - getBytesRead())
+        {
+            throw limitExceeded();
+        }
+        while (source != null && len >= buffer.capacity())
+        {
+            int read = source.read(b, off, len);
+            if (read < 0)
+            {
+                throw new EOFException(String.format("Unexpected end of stream, %d more bytes expected", len));
+            }
+            bufferOffset += read;
+            off += read;
+            len -= read;
+        }
+        if (len > 0)
+        {
+            require(len);
+            buffer.get(b, off, len);
+        }
     }
 
     public byte readByte() throws IOException
     {
-        byte result = dataStream.readByte();
-        bytesRead++;
-        return result;
+        require(1);
+        return buffer.get();
     }
 
     public int readUnsignedByte() throws IOException
     {
-        int result = dataStream.readUnsignedByte();
-        bytesRead++;
-        return result;
+        require(1);
+        return buffer.get() & 0xFF;
     }
 
     public short readShort() throws IOException
     {
-        short result = dataStream.readShort();
-        bytesRead += 2;
-        return result;
+        require(2);
+        return buffer.getShort();
     }
 
     public int readUnsignedShort() throws IOException
     {
-        int result = dataStream.readUnsignedShort();
-        bytesRead += 2;
-        return result;
+        require(2);
+        return buffer.getShort() & 0xFFFF;
     }
 
     public int readInt() throws IOException
     {
-        int result = dataStream.readInt();
-        bytesRead += 4;
-        return result;
+        require(4);
+        return buffer.getInt();
     }
 
     public long readLong() throws IOException
     {
-        long result = dataStream.readLong();
-        bytesRead += 8;
-        return result;
+        require(8);
+        return buffer.getLong();
     }
 
     public float readFloat() throws IOException
     {
-        float result = dataStream.readFloat();
-        bytesRead += 4;
-        return result;
+        require(4);
+        return buffer.getFloat();
     }
 
     public double readDouble() throws IOException
     {
-        double result = dataStream.readDouble();
-        bytesRead += 8;
-        return result;
+        require(8);
+        return buffer.getDouble();
+    }
+
+    /**
+     * Reads a big-endian int array in bulk, decoding as many elements per step as the buffer holds.
+     *
+     * @param dst The array to fill completely
+     * @throws IOException If the stream ends before the array is filled
+     */
+    public void readInts(int[] dst) throws IOException
+    {
+        int offset = 0;
+        while (offset < dst.length)
+        {
+            require(Integer.BYTES);
+            int count = Math.min(buffer.remaining() / Integer.BYTES, dst.length - offset);
+            buffer.asIntBuffer().get(dst, offset, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            offset += count;
+        }
+    }
+
+    /**
+     * Reads a big-endian long array in bulk, decoding as many elements per step as the buffer holds.
+     *
+     * @param dst The array to fill completely
+     * @throws IOException If the stream ends before the array is filled
+     */
+    public void readLongs(long[] dst) throws IOException
+    {
+        int offset = 0;
+        while (offset < dst.length)
+        {
+            require(Long.BYTES);
+            int count = Math.min(buffer.remaining() / Long.BYTES, dst.length - offset);
+            buffer.asLongBuffer().get(dst, offset, count);
+            buffer.position(buffer.position() + count * Long.BYTES);
+            offset += count;
+        }
+    }
+
+    /**
+     * Reads a modified UTF-8 string of the given length, decoding it straight out of the read buffer where possible.
+     * A malformed string is reported as {@link MalformedStringException}, which also carries a lossy decoding.
+     *
+     * @param length The encoded length in bytes
+     * @param cache  The cache to resolve the string through, or {@code null} to always decode
+     * @return The decoded string
+     * @throws IOException If the stream ends early or the bytes are not valid modified UTF-8
+     */
+    public String readUTF(int length, NBTNameCache cache) throws IOException
+    {
+        int offset = stage(length);
+        try
+        {
+            return cache == null ? ModifiedUTF8.decode(staged, offset, length) : cache.decode(staged, offset, length);
+        } catch (UTFDataFormatException e)
+        {
+            throw new MalformedStringException(e.getMessage(), ModifiedUTF8.decodeLossy(staged, offset, length));
+        }
+    }
+
+    /**
+     * Steps over a modified UTF-8 string of the given length, checking it in place without decoding it.
+     *
+     * @param length The encoded length in bytes
+     * @return The offset of the first malformed byte relative to the string's start, or -1 if it is valid
+     * @throws IOException If the stream ends early
+     */
+    public int validateUTF(int length) throws IOException
+    {
+        int offset = stage(length);
+        return ModifiedUTF8.validate(staged, offset, length);
+    }
+
+    /**
+     * Makes the next {@code length} bytes available in {@link #staged} and consumes them.
+     * They stay in the read buffer if they fit, otherwise they are copied into the scratch array.
+     *
+     * @param length The number of bytes to stage
+     * @return The offset of the bytes in {@link #staged}
+     * @throws IOException If the stream ends early
+     */
+    private int stage(int length) throws IOException
+    {
+        if (buffer.hasArray() && length <= buffer.capacity())
+        {
+            require(length);
+            int offset = buffer.arrayOffset() + buffer.position();
+            buffer.position(buffer.position() + length);
+            staged = buffer.array();
+            return offset;
+        }
+        if (scratch.length < length)
+        {
+            scratch = new byte[Math.max(length, 64)];
+        }
+        readFully(scratch, 0, length);
+        staged = scratch;
+        return 0;
+    }
+
+    /**
+     * Skips over the given number of bytes without decoding them.
+     * Buffered bytes are dropped first, the rest is skipped on the source itself.
+     *
+     * @param count The number of bytes to skip
+     * @throws IOException If the stream ends before all bytes could be skipped
+     */
+    public void skipBytes(long count) throws IOException
+    {
+        int buffered = (int) Math.min(buffer.remaining(), count);
+        buffer.position(buffer.position() + buffered);
+        count -= buffered;
+
+        if (count > 0 && count > byteLimit - getBytesRead())
+        {
+            throw limitExceeded();
+        }
+        while (count > 0)
+        {
+            long skipped = source == null ? 0 : source.skip(count);
+            if (skipped > 0)
+            {
+                bufferOffset += skipped;
+                count -= skipped;
+            } else
+            {
+                // skip() may return 0 without being at the end, so fall back to reading through the buffer
+                require(1);
+                buffered = (int) Math.min(buffer.remaining(), count);
+                buffer.position(buffer.position() + buffered);
+                count -= buffered;
+            }
+        }
     }
 
     public void close() throws IOException
     {
-        dataStream.close();
+        if (source != null)
+        {
+            source.close();
+        }
+    }
+
+    /**
+     * Makes sure at least {@code count} bytes are available in the buffer, refilling it from the source if needed.
+     * {@code count} must not exceed the buffer capacity.
+     *
+     * @param count The number of bytes the next decode step needs
+     * @throws IOException If the source ends before enough bytes could be read
+     */
+    private void require(int count) throws IOException
+    {
+        if (buffer.remaining() >= count) return;
+        if (bufferOffset + buffer.limit() >= byteLimit)
+        {
+            throw limitExceeded();
+        }
+        if (source == null)
+        {
+            throw new EOFException(String.format("Unexpected end of data, %d more bytes expected",
+                    count - buffer.remaining()));
+        }
+
+        bufferOffset += buffer.position();
+        buffer.compact();
+        byte[] array = buffer.array();
+        while (buffer.position() < count)
+        {
+            // Never fetch past the byte limit, so a decompression bomb is cut off after at most byteLimit bytes
+            long allowed = byteLimit - bufferOffset - buffer.position();
+            if (allowed <= 0)
+            {
+                buffer.flip();
+                throw limitExceeded();
+            }
+            int read = source.read(array, buffer.position(), (int) Math.min(buffer.remaining(), allowed));
+            if (read < 0)
+            {
+                buffer.flip();
+                throw new EOFException(String.format("Unexpected end of stream, %d more bytes expected",
+                        count - buffer.remaining()));
+            }
+            buffer.position(buffer.position() + read);
+        }
+        buffer.flip();
+    }
+
+    private IOException limitExceeded()
+    {
+        return new IOException(createContextualError(
+                String.format("Input exceeds the limit of %d bytes", byteLimit)));
+    }
+
+    /**
+     * Limits how many bytes may be consumed from this stream in total.
+     * Reads that would go past the limit fail with an {@link IOException}, and no more than
+     * {@code limit} bytes are ever pulled from the underlying source.
+     *
+     * @param limit The maximum number of bytes to consume, counted from the start of the stream
+     * @throws IllegalArgumentException If the limit is negative
+     */
+    public void setByteLimit(long limit)
+    {
+        if (limit < 0)
+        {
+            throw new IllegalArgumentException("Byte limit cannot be negative: " + limit);
+        }
+        this.byteLimit = limit;
+        if (source == null && buffer.limit() > limit)
+        {
+            buffer.limit((int) Math.max(limit, buffer.position()));
+        }
+    }
+
+    /**
+     * Returns how many more bytes may be consumed before the byte limit is reached.
+     *
+     * @return The remaining byte budget
+     */
+    public long getRemainingBytes()
+    {
+        return byteLimit - getBytesRead();
     }
 
     /**
@@ -112,7 +432,7 @@ public class PositionTrackingDataInputStream
      */
     public long getBytesRead()
     {
-        return bytesRead;
+        return bufferOffset + buffer.position();
     }
 
     /**
@@ -125,6 +445,26 @@ public class PositionTrackingDataInputStream
         return tagDepth;
     }
 
+    /**
+     * Returns the name of the tag currently being parsed.
+     *
+     * @return The current tag name, empty if unknown
+     */
+    public String getCurrentTagName()
+    {
+        return currentTagName;
+    }
+
+    /**
+     * Returns the type of the tag currently being parsed.
+     *
+     * @return The current tag type ID, or -1 if unknown
+     */
+    public int getCurrentTagType()
+    {
+        return currentTagType;
+    }
+
     /**
      * Sets the current tag context for error reporting.
      *
@@ -139,6 +479,20 @@ public class PositionTrackingDataInputStream
         this.currentTagType = tagType;
     }
 
+    /**
+     * Removes the context appended by {@link #createContextualError(String)} from an error message,
+     * for reports that carry the position separately.
+     *
+     * @param e The error to describe
+     * @return The message without the position suffix, or the exception type if there is no message
+     */
+    static String baseMessage(IOException e)
+    {
+        String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        int context = message.indexOf(" [Position:");
+        return context < 0 ? message : message.substring(0, context);
+    }
+
     /**
      * Creates a detailed error message with current parsing context.
      *
@@ -148,7 +502,7 @@ public class PositionTrackingDataInputStream
     public String createContextualError(String baseMessage)
     {
         StringBuilder error = new StringBuilder(baseMessage);
-        error.append(String.format(" [Position: %d bytes", bytesRead));
+        error.append(String.format(" [Position: %d bytes", getBytesRead()));
 
         if (tagDepth > 0)
         {
@@ -168,4 +522,30 @@ public class PositionTrackingDataInputStream
         error.append("]");
         return error.toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * Signals a string that isn't valid modified UTF-8, carrying its lossy decoding for error recovery.
+     */
+    static final class MalformedStringException extends UTFDataFormatException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String replacement;
+
+        MalformedStringException(String message, String replacement)
+        {
+            super(message);
+            this.replacement = replacement;
+        }
+
+        /**
+         * Returns the string decoded with every malformed sequence replaced by {@code U+FFFD}.
+         *
+         * @return The lossy decoding
+         */
+        String getReplacement()
+        {
+            return replacement;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package de.pauleff.jnbt.formats.binary;
+
+/**
+ * Resource limits applied while reading binary NBT, meant for input that cannot be trusted.
+ * All limits are checked before the corresponding memory is allocated, so a few header bytes
+ * claiming a huge array or list are rejected instead of exhausting the heap.
+ *
+ * <pre>{@code
+ * ReaderLimits limits = ReaderLimits.builder()
+ *     .maxTotalBytes(16 * 1024 * 1024)
+ *     .maxElements(1_000_000)
+ *     .build();
+ * ICompoundTag root = new NBTReader(file).setLimits(limits).read();
+ * }</pre>
+ *
+ * @author Paul Ferlitz
+ */
+public final class ReaderLimits
+{
+    /**
+     * Default maximum nesting depth of compounds and lists, the same limit Minecraft enforces.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 512;
+    /**
+     * Default maximum length of a single byte, int or long array.
+     */
+    public static final int DEFAULT_MAX_ARRAY_LENGTH = 100_000_000;
+    /**
+     * Default maximum number of elements of a single list.
+     */
+    public static final int DEFAULT_MAX_LIST_LENGTH = 10_000_000;
+    /**
+     * Limits used by readers that weren't given their own: no byte or element budget,
+     * {@link #DEFAULT_MAX_DEPTH}, {@link #DEFAULT_MAX_ARRAY_LENGTH} and {@link #DEFAULT_MAX_LIST_LENGTH}.
+     */
+    public static final ReaderLimits DEFAULT = builder().build();
+
+    private final long maxTotalBytes;
+    private final long maxElements;
+    private final int maxDepth;
+    private final int maxArrayLength;
+    private final int maxListLength;
+
+    private ReaderLimits(Builder builder)
+    {
+        this.maxTotalBytes = builder.maxTotalBytes;
+        this.maxElements = builder.maxElements;
+        this.maxDepth = builder.maxDepth;
+        this.maxArrayLength = builder.maxArrayLength;
+        this.maxListLength = builder.maxListLength;
+    }
+
+    /**
+     * Creates a builder starting out with the default limits.
+     *
+     * @return new {@link Builder}
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Returns the maximum number of uncompressed bytes a single read may consume.
+     *
+     * @return The byte budget
+     */
+    public long getMaxTotalBytes()
+    {
+        return maxTotalBytes;
+    }
+
+    /**
+     * Returns the maximum number of tags a single read may create, counting every list element.
+     *
+     * @return The element budget
+     */
+    public long getMaxElements()
+    {
+        return maxElements;
+    }
+
+    /**
+     * Returns how deep compounds and lists may be nested below the root compound, which has depth 0.
+     *
+     * @return The maximum nesting depth
+     */
+    public int getMaxDepth()
+    {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the maximum number of entries of a single byte, int or long array.
+     *
+     * @return The maximum array length
+     */
+    public int getMaxArrayLength()
+    {
+        return maxArrayLength;
+    }
+
+    /**
+     * Returns the maximum number of elements of a single list.
+     *
+     * @return The maximum list length
+     */
+    public int getMaxListLength()
+    {
+        return maxListLength;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("ReaderLimits{maxTotalBytes=%d, maxElements=%d, maxDepth=%d, maxArrayLength=%d, maxListLength=%d}",
+                maxTotalBytes, maxElements, maxDepth, maxArrayLength, maxListLength);
+    }
+
+    /**
+     * Fluent builder for {@link ReaderLimits}.
+     */
+    public static final class Builder
+    {
+        private long maxTotalBytes = Long.MAX_VALUE;
+        private long maxElements = Long.MAX_VALUE;
+        private int maxDepth = DEFAULT_MAX_DEPTH;
+        private int maxArrayLength = DEFAULT_MAX_ARRAY_LENGTH;
+        private int maxListLength = DEFAULT_MAX_LIST_LENGTH;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Sets the maximum number of uncompressed bytes a single read may consume.
+         *
+         * @param maxTotalBytes The byte budget
+         * @return This builder for method chaining
+         * @throws IllegalArgumentException If the budget is negative
+         */
+        public Builder maxTotalBytes(long maxTotalBytes)
+        {
+            this.maxTotalBytes = requireNonNegative(maxTotalBytes, "Maximum total bytes");
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of tags a single read may create, counting every list element.
+         *
+         * @param maxElements The element budget
+         * @return This builder for method chaining
+         * @throws IllegalArgumentException If the budget is negative
+         */
+        public Builder maxElements(long maxElements)
+        {
+            this.maxElements = requireNonNegative(maxElements, "Maximum elements");
+            return this;
+        }
+
+        /**
+         * Sets how deep compounds and lists may be nested below the root compound, which has depth 0.
+         *
+         * @param maxDepth The maximum nesting depth
+         * @return This builder for method chaining
+         * @throws IllegalArgumentException If the depth is negative
+         */
+        public Builder maxDepth(int maxDepth)
+        {
+            this.maxDepth = (int) requireNonNegative(maxDepth, "Maximum depth");
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of entries of a single byte, int or long array.
+         *
+         * @param maxArrayLength The maximum array length
+         * @return This builder for method chaining
+         * @throws IllegalArgumentException If the length is negative
+         */
+        public Builder maxArrayLength(int maxArrayLength)
+        {
+            this.maxArrayLength = (int) requireNonNegative(maxArrayLength, "Maximum array length");
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of elements of a single list.
+         *
+         * @param maxListLength The maximum list length
+         * @return This builder for method chaining
+         * @throws IllegalArgumentException If the length is negative
+         */
+        public Builder maxListLength(int maxListLength)
+        {
+            this.maxListLength = (int) requireNonNegative(maxListLength, "Maximum list length");
+            return this;
+        }
+
+        /**
+         * Creates the configured limits.
+         *
+         * @return new {@link ReaderLimits}
+         */
+        public ReaderLimits build()
+        {
+            return new ReaderLimits(this);
+        }
+
+        private static long requireNonNegative(long value, String what)
+        {
+            if (value < 0)
+            {
+                throw new IllegalArgumentException(what + " cannot be negative: " + value);
+            }
+            return value;
+        }
+    }
+}
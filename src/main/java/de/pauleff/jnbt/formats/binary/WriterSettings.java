@@ -0,0 +1,295 @@
+package de.pauleff.jnbt.formats.binary;
+
+import java.util.zip.Deflater;
+
+/**
+ * Tuning of the output pipeline and save behaviour used when writing binary NBT to a file.
+ * Tags are encoded into a {@link NBTOutputBuffer} that hands full blocks to the compressor,
+ * which in turn writes its own blocks to the file. Larger buffers mean fewer deflate calls and system calls,
+ * a lower compression level trades file size for speed.
+ *
+ * <p>By default the target file is overwritten in place after copying it to a {@code .bak} file.
+ * With {@link Builder#atomicSave(boolean)} the data is written to a temporary file next to the target instead,
+ * forced to disk and then moved over the target in one step, so a crash leaves either the old or the new file.
+ * The old file is then kept as a hard link instead of a copy by default, see {@link BackupMode}.</p>
+ *
+ * <pre>{@code
+ * WriterSettings settings = WriterSettings.builder()
+ *     .bufferSize(256 * 1024)
+ *     .compressionLevel(Deflater.BEST_SPEED)
+ *     .build();
+ * new NBTWriter(file, Compression_Types.GZIP, settings).write(root);
+ * }</pre>
+ *
+ * @author Paul Ferlitz
+ */
+public final class WriterSettings
+{
+    /**
+     * Default size of the encoding buffer in bytes.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Default size of the compressor's output buffer in bytes.
+     */
+    public static final int DEFAULT_DEFLATER_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Default number of backups kept by {@link BackupMode#ROTATE}.
+     */
+    public static final int DEFAULT_BACKUP_COUNT = 3;
+    /**
+     * Settings used by writers that weren't given their own: {@link #DEFAULT_BUFFER_SIZE},
+     * {@link #DEFAULT_DEFLATER_BUFFER_SIZE}, {@link Deflater#DEFAULT_COMPRESSION}, in-place saves and
+     * {@link BackupMode#COPY} backups.
+     */
+    public static final WriterSettings DEFAULT = builder().build();
+
+    private final int bufferSize;
+    private final int deflaterBufferSize;
+    private final int compressionLevel;
+    private final boolean atomicSave;
+    private final BackupMode backupMode;
+    private final int backupCount;
+
+    private WriterSettings(Builder builder)
+    {
+        this.bufferSize = builder.bufferSize;
+        this.deflaterBufferSize = builder.deflaterBufferSize;
+        this.compressionLevel = builder.compressionLevel;
+        this.atomicSave = builder.atomicSave;
+        if (builder.backupMode != null)
+        {
+            this.backupMode = builder.backupMode;
+        } else
+        {
+            this.backupMode = atomicSave ? BackupMode.HARD_LINK : BackupMode.COPY;
+        }
+        this.backupCount = builder.backupCount;
+    }
+
+    /**
+     * Creates a builder starting out with the default settings.
+     *
+     * @return new {@link Builder}
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Returns the size of the buffer tags are encoded into before they are handed on in one block.
+     *
+     * @return The encoding buffer size in bytes
+     */
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    /**
+     * Returns the size of the buffer the compressor collects deflated data in before writing it to the file.
+     *
+     * @return The compressor buffer size in bytes
+     */
+    public int getDeflaterBufferSize()
+    {
+        return deflaterBufferSize;
+    }
+
+    /**
+     * Returns the deflate compression level used for GZIP and ZLIB.
+     *
+     * @return The compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public int getCompressionLevel()
+    {
+        return compressionLevel;
+    }
+
+    /**
+     * Returns whether files are written to a temporary file and moved over the target once complete.
+     *
+     * @return {@code true} for atomic saves, {@code false} to overwrite the target in place
+     */
+    public boolean isAtomicSave()
+    {
+        return atomicSave;
+    }
+
+    /**
+     * Returns how the previous version of an existing file is kept.
+     * Unless set explicitly, this is {@link BackupMode#HARD_LINK} for atomic saves and {@link BackupMode#COPY} otherwise.
+     *
+     * @return The backup mode
+     */
+    public BackupMode getBackupMode()
+    {
+        return backupMode;
+    }
+
+    /**
+     * Returns how many previous versions {@link BackupMode#ROTATE} keeps.
+     *
+     * @return The number of backups
+     */
+    public int getBackupCount()
+    {
+        return backupCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("WriterSettings{bufferSize=%d, deflaterBufferSize=%d, compressionLevel=%d, atomicSave=%b, backupMode=%s, backupCount=%d}",
+                bufferSize, deflaterBufferSize, compressionLevel, atomicSave, backupMode, backupCount);
+    }
+
+    /**
+     * How the previous version of a file is kept when it is overwritten.
+     * Hard links cost no data writes, but are only possible with atomic saves, as writing in place would change
+     * the linked backup too. Without atomic saves, or on file systems without hard links, backups are copied.
+     */
+    public enum BackupMode
+    {
+        /**
+         * Keep no backup.
+         */
+        NONE,
+        /**
+         * Copy the previous version to {@code <name>.bak}.
+         */
+        COPY,
+        /**
+         * Keep the previous version as {@code <name>.bak} by hard-linking it.
+         */
+        HARD_LINK,
+        /**
+         * Keep the last {@link WriterSettings#getBackupCount()} versions as {@code <name>.bak.1} (newest) to {@code <name>.bak.N},
+         * hard-linking the newest one.
+         */
+        ROTATE
+    }
+
+    /**
+     * Fluent builder for {@link WriterSettings}.
+     */
+    public static final class Builder
+    {
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+        private int deflaterBufferSize = DEFAULT_DEFLATER_BUFFER_SIZE;
+        private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        private boolean atomicSave;
+        private BackupMode backupMode; // null picks the default for the save mode
+        private int backupCount = DEFAULT_BACKUP_COUNT;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Sets the size of the buffer tags are encoded into before they are handed on in one block.
+         *
+         * @param bufferSize The encoding buffer size in bytes
+         * @return This builder for method chaining
+         * @throws IllegalArgumentException If the size isn't positive
+         */
+        public Builder bufferSize(int bufferSize)
+        {
+            this.bufferSize = requirePositive(bufferSize, "Buffer size");
+            return this;
+        }
+
+        /**
+         * Sets the size of the buffer the compressor collects deflated data in before writing it to the file.
+         *
+         * @param deflaterBufferSize The compressor buffer size in bytes
+         * @return This builder for method chaining
+         * @throws IllegalArgumentException If the size isn't positive
+         */
+        public Builder deflaterBufferSize(int deflaterBufferSize)
+        {
+            this.deflaterBufferSize = requirePositive(deflaterBufferSize, "Deflater buffer size");
+            return this;
+        }
+
+        /**
+         * Sets the deflate compression level used for GZIP and ZLIB.
+         *
+         * @param compressionLevel The compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+         * @return This builder for method chaining
+         * @throws IllegalArgumentException If the level is out of range
+         */
+        public Builder compressionLevel(int compressionLevel)
+        {
+            if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)
+            {
+                throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+            }
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        /**
+         * Sets whether files are written to a temporary file, forced to disk and moved over the target once complete.
+         *
+         * @param atomicSave {@code true} for atomic saves, {@code false} to overwrite the target in place
+         * @return This builder for method chaining
+         */
+        public Builder atomicSave(boolean atomicSave)
+        {
+            this.atomicSave = atomicSave;
+            return this;
+        }
+
+        /**
+         * Sets how the previous version of an existing file is kept.
+         * Defaults to {@link BackupMode#HARD_LINK} for atomic saves and {@link BackupMode#COPY} otherwise.
+         *
+         * @param backupMode The backup mode
+         * @return This builder for method chaining
+         * @throws IllegalArgumentException If the mode is {@code null}
+         */
+        public Builder backupMode(BackupMode backupMode)
+        {
+            if (backupMode == null)
+            {
+                throw new IllegalArgumentException("Backup mode cannot be null");
+            }
+            this.backupMode = backupMode;
+            return this;
+        }
+
+        /**
+         * Sets how many previous versions {@link BackupMode#ROTATE} keeps.
+         *
+         * @param backupCount The number of backups
+         * @return This builder for method chaining
+         * @throws IllegalArgumentException If the count isn't positive
+         */
+        public Builder backupCount(int backupCount)
+        {
+            this.backupCount = requirePositive(backupCount, "Backup count");
+            return this;
+        }
+
+        /**
+         * Creates the configured settings.
+         *
+         * @return new {@link WriterSettings}
+         */
+        public WriterSettings build()
+        {
+            return new WriterSettings(this);
+        }
+
+        private static int requirePositive(int value, String what)
+        {
+            if (value <= 0)
+            {
+                throw new IllegalArgumentException(what + " must be positive: " + value);
+            }
+            return value;
+        }
+    }
+}
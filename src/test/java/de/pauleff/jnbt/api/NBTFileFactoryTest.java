@@ -0,0 +1,258 @@
+package de.pauleff.jnbt.api;
+
+import de.pauleff.jnbt.builder.NBTBuilder;
+import de.pauleff.jnbt.formats.binary.Compression_Types;
+import de.pauleff.jnbt.formats.binary.NBTFileHandler;
+import de.pauleff.jnbt.formats.binary.NBTIOListener;
+import de.pauleff.jnbt.formats.binary.ParallelNBTReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NBTFileFactoryTest
+{
+
+    @TempDir
+    Path tempDir;
+
+    private List<File> writePlayerFiles(int count) throws IOException
+    {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            File file = tempDir.resolve("player" + i + ".dat").toFile();
+            ICompoundTag player = NBTBuilder.compound("Player" + i)
+                    .addInt("XpLevel", i)
+                    .addString("Dimension", "minecraft:overworld")
+                    .build();
+            NBTFileFactory.writeNBTFile(file, player, Compression_Types.values()[i % 3]);
+            files.add(file);
+        }
+        return files;
+    }
+
+    @Test
+    void testReadAllAsync() throws IOException
+    {
+        List<File> files = writePlayerFiles(20);
+        File corrupted = tempDir.resolve("corrupted.dat").toFile();
+        Files.write(corrupted.toPath(), new byte[]{10, 0, 0, 3, 0});
+        files.add(5, corrupted);
+
+        List<NBTReadResult> results = NBTFileFactory.readAllAsync(files, 3).join();
+        assertEquals(files.size(), results.size());
+        for (int i = 0; i < results.size(); i++)
+        {
+            NBTReadResult result = results.get(i);
+            assertSame(files.get(i), result.getFile());
+            if (result.getFile() == corrupted)
+            {
+                assertFalse(result.isSuccess());
+                assertInstanceOf(IOException.class, result.getError());
+            } else
+            {
+                assertTrue(result.isSuccess(), result.toString());
+                assertEquals(i < 5 ? i : i - 1, result.getRoot().getInt("XpLevel"));
+            }
+        }
+        assertTrue(NBTFileFactory.readAllAsync(List.of(), 3).join().isEmpty());
+    }
+
+    @Test
+    void testReadNBTFileAsync() throws IOException
+    {
+        File file = writePlayerFiles(1).get(0);
+        assertEquals(0, NBTFileFactory.readNBTFileAsync(file).join().getInt("XpLevel"));
+
+        File missing = tempDir.resolve("missing.dat").toFile();
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> NBTFileFactory.readNBTFileAsync(missing).join());
+        assertNotNull(e.getCause());
+    }
+
+    /**
+     * Installs a listener throwing an {@link Error} when the given file is opened for reading.
+     */
+    private static void failOnRead(File failing)
+    {
+        NBTFileHandler.setListener(new NBTIOListener()
+        {
+            @Override
+            public void readOpened(File file, Compression_Types compression)
+            {
+                if (file.equals(failing))
+                {
+                    throw new OutOfMemoryError("Simulated");
+                }
+            }
+        });
+    }
+
+    @Test
+    void testAsyncReadsCaptureErrors() throws IOException
+    {
+        List<File> files = writePlayerFiles(3);
+        File failing = files.get(1);
+        failOnRead(failing);
+        try
+        {
+            CompletionException e = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> assertThrows(CompletionException.class, () -> NBTFileFactory.readNBTFileAsync(failing).join()));
+            assertInstanceOf(OutOfMemoryError.class, e.getCause());
+
+            List<NBTReadResult> results = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> NBTFileFactory.readAllAsync(files, 2).join());
+            assertEquals(3, results.size());
+            assertInstanceOf(OutOfMemoryError.class, results.get(1).getError());
+            assertEquals(0, results.get(0).getRoot().getInt("XpLevel"));
+            assertEquals(2, results.get(2).getRoot().getInt("XpLevel"));
+        } finally
+        {
+            NBTFileHandler.setListener(NBTIOListener.NONE);
+        }
+    }
+
+    @Test
+    void testBatchReaderScansDirectory() throws IOException
+    {
+        List<File> files = writePlayerFiles(12);
+        Path nested = Files.createDirectories(tempDir.resolve("region/nested"));
+        File structure = nested.resolve("house.NBT").toFile();
+        NBTFileFactory.writeNBTFile(structure, NBTBuilder.compound("house").addInt("XpLevel", 99).build());
+        Files.writeString(nested.resolve("notes.txt"), "not nbt");
+        Files.write(nested.resolve("broken.dat"), new byte[]{1, 2, 3});
+
+        Thread caller = Thread.currentThread();
+        List<NBTReadResult> results = new ArrayList<>();
+        long count = new NBTBatchReader().setParallelism(3).setMaxInFlight(2).readDirectory(tempDir, result ->
+        {
+            assertSame(caller, Thread.currentThread());
+            results.add(result);
+        });
+
+        assertEquals(files.size() + 2, count);
+        assertEquals(count, results.size());
+        assertEquals(1, results.stream().filter(result -> !result.isSuccess()).count());
+        int xpSum = results.stream().filter(NBTReadResult::isSuccess).mapToInt(result -> result.getRoot().getInt("XpLevel")).sum();
+        assertEquals(66 + 99, xpSum);
+    }
+
+    @Test
+    void testBatchReaderCapturesErrors() throws IOException
+    {
+        List<File> files = writePlayerFiles(6);
+        File failing = files.get(4);
+        failOnRead(failing);
+        try
+        {
+            List<NBTReadResult> results = new ArrayList<>();
+            long count = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> new NBTBatchReader().setParallelism(2).setMaxInFlight(2).readDirectory(tempDir, results::add));
+            assertEquals(files.size(), count);
+            assertEquals(files.size(), results.size());
+            for (NBTReadResult result : results)
+            {
+                if (result.getFile().equals(failing))
+                {
+                    assertInstanceOf(OutOfMemoryError.class, result.getError());
+                } else
+                {
+                    assertTrue(result.isSuccess(), result.toString());
+                }
+            }
+        } finally
+        {
+            NBTFileHandler.setListener(NBTIOListener.NONE);
+        }
+    }
+
+    @Test
+    void testListenerReceivesEvents() throws IOException
+    {
+        List<String> events = new ArrayList<>();
+        long[] readBytes = new long[1];
+        NBTFileHandler.setListener(new NBTIOListener()
+        {
+            @Override
+            public void readOpened(File file, Compression_Types compression)
+            {
+                events.add("read " + file.getName() + " " + compression.getName());
+            }
+
+            @Override
+            public void readClosed(File file, long bytes, long nanos)
+            {
+                readBytes[0] = bytes;
+                events.add("closed " + file.getName());
+            }
+
+            @Override
+            public void writeOpened(File file, Compression_Types compression)
+            {
+                events.add("write " + file.getName() + " " + compression.getName());
+            }
+
+            @Override
+            public void backupCreated(File file, File backup)
+            {
+                events.add("backup " + backup.getName());
+            }
+        });
+        try
+        {
+            List<File> files = writePlayerFiles(2);
+            File file = files.get(1);
+            NBTFileFactory.readNBTFile(file);
+            assertEquals(List.of("write player0.dat NONE", "write player1.dat GZIP",
+                    "read player1.dat GZIP", "closed player1.dat"), events);
+            assertTrue(readBytes[0] > 0);
+
+            // Uncompressed files are memory-mapped
+            events.clear();
+            new ParallelNBTReader(files.get(0)).read();
+            assertEquals(List.of("read player0.dat NONE", "closed player0.dat"), events);
+            assertEquals(files.get(0).length(), readBytes[0]);
+
+            events.clear();
+            NBTFileFactory.writeNBTFile(file, NBTFileFactory.readNBTFile(file));
+            assertTrue(events.contains("backup player1.dat.bak"), events.toString());
+        } finally
+        {
+            NBTFileHandler.setListener(NBTIOListener.NONE);
+        }
+        assertThrows(IllegalArgumentException.class, () -> NBTFileHandler.setListener(null));
+    }
+
+    @Test
+    void testReadNBTStreamDetectsCompression() throws IOException
+    {
+        List<File> files = writePlayerFiles(3);
+        for (int i = 0; i < files.size(); i++)
+        {
+            File file = files.get(i);
+            byte[] data = Files.readAllBytes(file.toPath());
+            ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+            assertEquals(Compression_Types.values()[i], NBTFileHandler.getCompressionType(bytes));
+            assertEquals(i, NBTFileFactory.readNBTStream(bytes).getInt("XpLevel"));
+
+            try (InputStream in = Files.newInputStream(file.toPath()))
+            {
+                assertFalse(in.markSupported());
+                assertThrows(IllegalArgumentException.class, () -> NBTFileHandler.getCompressionType(in));
+                assertEquals(i, NBTFileFactory.readNBTStream(in).getInt("XpLevel"));
+            }
+        }
+    }
+}
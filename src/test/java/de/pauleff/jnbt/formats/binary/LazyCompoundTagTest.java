@@ -0,0 +1,125 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.api.NBTFileFactory;
+import de.pauleff.jnbt.builder.NBTBuilder;
+import de.pauleff.jnbt.core.Tag;
+import de.pauleff.jnbt.util.NBTTags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyCompoundTagTest
+{
+    @TempDir
+    Path tempDir;
+
+    private static LazyCompoundTag lazy(ICompoundTag root) throws IOException
+    {
+        return LazyCompoundTag.of(ByteBuffer.wrap(NBTWriter.toByteArray(root)));
+    }
+
+    /**
+     * Decodes the same bytes eagerly, so list elements carry the names the lazy tree gives them.
+     */
+    private static ICompoundTag eager(ICompoundTag root) throws IOException
+    {
+        return new NBTReader().read(ByteBuffer.wrap(NBTWriter.toByteArray(root)));
+    }
+
+    @Test
+    void testDecodesOnAccess() throws IOException
+    {
+        ICompoundTag original = NBTBuilder.compound("root")
+                .addInt("int", 42)
+                .addCompound("Data").addString("LevelName", "world").endCompound()
+                .build();
+        File file = tempDir.resolve("lazy.dat").toFile();
+        NBTFileFactory.writeNBTFile(file, original, Compression_Types.ZLIB);
+
+        LazyCompoundTag root = (LazyCompoundTag) NBTFileFactory.readNBTFileLazy(file);
+        assertEquals(2, root.size());
+        assertEquals(42, root.getInt("int"));
+        LazyCompoundTag data = (LazyCompoundTag) root.getCompound("Data");
+        assertEquals("world", data.getString("LevelName"));
+        assertFalse(root.isMaterialized());
+        assertFalse(data.isMaterialized());
+
+        root.setInt("int", 43);
+        assertTrue(root.isMaterialized());
+        assertEquals(43, root.getInt("int"));
+    }
+
+    @Test
+    void testLookupIsDepthFirstLikeEagerTree() throws IOException
+    {
+        ICompoundTag original = NBTBuilder.compound("root")
+                .addCompound("Data").addInt("id", 1).endCompound()
+                .addInt("id", 2)
+                .build();
+        LazyCompoundTag root = lazy(original);
+        assertEquals(1, original.getInt("id"));
+        assertEquals(1, root.getInt("id"));
+        assertFalse(root.isMaterialized());
+    }
+
+    @Test
+    void testLookupDescendsIntoLists() throws IOException
+    {
+        ICompoundTag original = NBTBuilder.compound("root")
+                .addList("numbers", NBTTags.Tag_Int).addInt("n", 1).endCompound()
+                .addList("items", NBTTags.Tag_Compound)
+                .addCompound("item").addString("id", "stone").endList()
+                .endCompound()
+                .addString("id", "outer")
+                .build();
+        ICompoundTag eager = eager(original);
+        LazyCompoundTag root = lazy(original);
+        assertEquals("stone", root.getString("id"));
+        assertEquals(eager.getTag("null"), root.getTag("null"));
+        assertSame(root.getTag("id"), root.getTag("id"));
+        assertFalse(root.isMaterialized());
+    }
+
+    @Test
+    void testMissDoesNotMaterialize() throws IOException
+    {
+        LazyCompoundTag root = lazy(NBTBuilder.compound("root")
+                .addCompound("Data").addCompound("Player").addInt("XpLevel", 30).endCompound().endCompound()
+                .addList("items", NBTTags.Tag_Compound)
+                .addCompound("item").addString("id", "stone").endList()
+                .endCompound()
+                .build());
+        assertNull(root.getTag("missing"));
+        assertFalse(root.isMaterialized());
+        assertFalse(((LazyCompoundTag) root.getCompound("Data")).isMaterialized());
+        assertFalse(((LazyCompoundTag) root.getCompound("Player")).isMaterialized());
+    }
+
+    @Test
+    void testEqualsEagerTree() throws IOException
+    {
+        ICompoundTag original = NBTBuilder.compound("root")
+                .addInt("int", 42)
+                .addCompound("Data").addString("LevelName", "world").addLong("Seed", -1L).endCompound()
+                .addList("items", NBTTags.Tag_Compound)
+                .addCompound("item").addString("id", "stone").endList()
+                .endCompound()
+                .build();
+        ICompoundTag eager = eager(original);
+        LazyCompoundTag root = lazy(original);
+        assertEquals(eager, root);
+        assertEquals(root, eager);
+        assertEquals(eager.hashCode(), root.hashCode());
+
+        Tag<?> other = lazy(NBTBuilder.compound("root").addInt("int", 43).build());
+        assertNotEquals(eager, other);
+        assertNotEquals(other, eager);
+    }
+}
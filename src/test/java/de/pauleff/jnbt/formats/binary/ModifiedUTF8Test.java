@@ -0,0 +1,92 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.builder.NBTBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModifiedUTF8Test
+{
+    private static final String MIXED = "ascii \u0000 ä € 😀 end";
+
+    @Test
+    void testMatchesDataOutputEncoding() throws IOException
+    {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new DataOutputStream(expected).writeUTF(MIXED);
+        byte[] reference = Arrays.copyOfRange(expected.toByteArray(), 2, expected.size());
+
+        assertEquals(reference.length, ModifiedUTF8.encodedLength(MIXED));
+        byte[] encoded = new byte[reference.length];
+        assertEquals(reference.length, ModifiedUTF8.encode(MIXED, encoded, 0));
+        assertArrayEquals(reference, encoded);
+        assertEquals(MIXED, ModifiedUTF8.decode(encoded, 0, encoded.length));
+        assertEquals(-1, ModifiedUTF8.validate(encoded, 0, encoded.length));
+    }
+
+    @Test
+    void testLegacyStandardUTF8IsAccepted() throws IOException
+    {
+        byte[] legacy = "😀".getBytes(StandardCharsets.UTF_8);
+        assertEquals(4, legacy.length);
+        assertEquals("😀", ModifiedUTF8.decode(legacy, 0, legacy.length));
+    }
+
+    @Test
+    void testMalformedInput()
+    {
+        byte[] truncated = {'a', (byte) 0xE2, (byte) 0x82};
+        assertThrows(UTFDataFormatException.class, () -> ModifiedUTF8.decode(truncated, 0, truncated.length));
+        assertEquals(1, ModifiedUTF8.validate(truncated, 0, truncated.length));
+    }
+
+    @Test
+    void testValidateAppliesDecodeRules() throws IOException
+    {
+        byte[] legacy = "a😀".getBytes(StandardCharsets.UTF_8);
+        assertEquals(-1, ModifiedUTF8.validate(legacy, 0, legacy.length));
+
+        byte[] outOfRange = {'a', (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80};
+        byte[] overlong = {'a', (byte) 0xF0, (byte) 0x80, (byte) 0x80, (byte) 0x80};
+        for (byte[] bytes : new byte[][]{outOfRange, overlong})
+        {
+            assertThrows(UTFDataFormatException.class, () -> ModifiedUTF8.decode(bytes, 0, bytes.length));
+            assertEquals(1, ModifiedUTF8.validate(bytes, 0, bytes.length));
+        }
+    }
+
+    @Test
+    void testLossyDecodeReplacesOnlyBadSequences()
+    {
+        byte[] outOfRange = {'a', (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80, 'b', (byte) 0xC3, (byte) 0xA4};
+        assertEquals("a\uFFFDb\u00e4", ModifiedUTF8.decodeLossy(outOfRange, 0, outOfRange.length));
+
+        byte[] truncated = {'x', (byte) 0xE2, (byte) 0x82, 'y', (byte) 0xFF, 'z', (byte) 0xC3};
+        assertEquals("x\uFFFDy\uFFFDz\uFFFD", ModifiedUTF8.decodeLossy(truncated, 0, truncated.length));
+
+        byte[] stray = {(byte) 0x80, (byte) 0x80, 'k'};
+        assertEquals("\uFFFD\uFFFDk", ModifiedUTF8.decodeLossy(stray, 0, stray.length));
+    }
+
+    @Test
+    void testNamesAndStringsRoundTrip() throws IOException
+    {
+        ICompoundTag original = NBTBuilder.compound("root \u0000")
+                .addString("name 😀", MIXED)
+                .build();
+        byte[] data = NBTSamples.encode(original);
+        ICompoundTag read = new NBTReader(new DataInputStream(new ByteArrayInputStream(data))).read();
+        assertEquals("root \u0000", read.getName());
+        assertEquals(MIXED, read.getString("name 😀"));
+    }
+}
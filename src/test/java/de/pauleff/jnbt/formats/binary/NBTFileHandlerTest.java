@@ -0,0 +1,94 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.api.NBTFileFactory;
+import de.pauleff.jnbt.builder.NBTBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NBTFileHandlerTest
+{
+    @TempDir
+    Path tempDir;
+
+    private static void save(File file, int version, WriterSettings settings) throws IOException
+    {
+        NBTFileFactory.writeNBTFile(file, NBTBuilder.compound("Level").addInt("Version", version).build(),
+                Compression_Types.GZIP, settings);
+    }
+
+    private static int version(File file) throws IOException
+    {
+        return NBTFileFactory.readNBTFile(file).getInt("Version");
+    }
+
+    @Test
+    void testAtomicSaveWithRotatingBackups() throws IOException
+    {
+        File file = tempDir.resolve("level.dat").toFile();
+        File newest = new File(file.getPath() + ".bak.1");
+        File oldest = new File(file.getPath() + ".bak.2");
+        WriterSettings settings = WriterSettings.builder()
+                .atomicSave(true)
+                .backupMode(WriterSettings.BackupMode.ROTATE)
+                .backupCount(2)
+                .build();
+        for (int version = 0; version < 4; version++)
+        {
+            save(file, version, settings);
+        }
+        assertEquals(3, version(file));
+        assertEquals(2, version(newest));
+        assertEquals(1, version(oldest));
+        assertFalse(new File(file.getPath() + ".bak.3").exists());
+        assertFalse(new File(file.getPath() + ".bak").exists());
+
+        // A failing save must leave the target and its backups untouched, and no temporary file behind
+        ICompoundTag tooLong = NBTBuilder.compound("Level").addString("Name", "x".repeat(70_000)).build();
+        assertThrows(IOException.class, () -> NBTFileFactory.writeNBTFile(file, tooLong, Compression_Types.GZIP, settings));
+        assertEquals(3, version(file));
+        assertEquals(2, version(newest));
+        assertEquals(1, version(oldest));
+        try (var files = Files.list(tempDir))
+        {
+            assertTrue(files.noneMatch(path -> path.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    void testAtomicSaveHardLinksBackupByDefault() throws IOException
+    {
+        File file = tempDir.resolve("level.dat").toFile();
+        File backup = new File(file.getPath() + ".bak");
+        WriterSettings settings = WriterSettings.builder().atomicSave(true).build();
+        save(file, 1, settings);
+        assertFalse(backup.exists());
+        Object previous = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+
+        save(file, 2, settings);
+        assertEquals(2, version(file));
+        assertEquals(1, version(backup));
+        if (previous != null)
+        {
+            assertEquals(previous, Files.readAttributes(backup.toPath(), BasicFileAttributes.class).fileKey());
+        }
+    }
+
+    @Test
+    void testInPlaceSaveCopiesBackup() throws IOException
+    {
+        File file = tempDir.resolve("level.dat").toFile();
+        save(file, 1, WriterSettings.DEFAULT);
+        save(file, 2, WriterSettings.DEFAULT);
+        assertEquals(2, version(file));
+        assertEquals(1, version(new File(file.getPath() + ".bak")));
+    }
+}
@@ -0,0 +1,157 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.api.NBTFileFactory;
+import de.pauleff.jnbt.builder.NBTBuilder;
+import de.pauleff.jnbt.core.Tag_Compound;
+import de.pauleff.jnbt.util.NBTTags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NBTIndexTest
+{
+    @TempDir
+    Path tempDir;
+
+    private static ICompoundTag level(String levelName, int xpLevel)
+    {
+        return NBTBuilder.compound("Level")
+                .addCompound("Data")
+                .addString("LevelName", levelName)
+                .addCompound("Player")
+                .addInt("XpLevel", xpLevel)
+                .endCompound()
+                .endCompound()
+                .addList("Entities", NBTTags.Tag_Compound)
+                .addCompound("zombie").addString("id", "minecraft:zombie").endList()
+                .addCompound("cow").addString("id", "minecraft:cow").endList()
+                .endCompound()
+                .addLongArray("longs", new long[5000])
+                .build();
+    }
+
+    @Test
+    void testIndexSeeksToSubtrees() throws IOException
+    {
+        File file = tempDir.resolve("static.nbt").toFile();
+        NBTFileFactory.writeNBTFile(file, level("world", 30), Compression_Types.NONE);
+
+        NBTIndex index = NBTIndex.loadOrBuild(file, 2);
+        assertEquals(List.of("Data", "Data.Player", "Entities", "Entities[0]", "Entities[1]"), List.copyOf(index.getPaths()));
+        assertTrue(NBTIndex.sidecarFile(file).isFile());
+        assertFalse(index.isStale(file));
+
+        NBTIndex loaded = NBTIndex.load(NBTIndex.sidecarFile(file));
+        Tag_Compound player = (Tag_Compound) loaded.read(file, "Data.Player");
+        assertEquals("Player", player.getName());
+        assertEquals(30, player.getInt("XpLevel"));
+        assertEquals("minecraft:cow", ((Tag_Compound) loaded.read(file, "Entities[1]")).getString("id"));
+        assertEquals(NBTFileFactory.readNBTFile(file).getTag("Entities"), loaded.read(file, "Entities"));
+        assertNull(loaded.read(file, "Data.Player.XpLevel"));
+    }
+
+    @Test
+    void testSameSizeRewriteIsDetected() throws IOException
+    {
+        File file = tempDir.resolve("static.nbt").toFile();
+        NBTFileFactory.writeNBTFile(file, level("world", 30), Compression_Types.NONE);
+        NBTIndex index = NBTIndex.loadOrBuild(file, 2);
+        long size = file.length();
+        long modified = file.lastModified();
+
+        NBTFileFactory.writeNBTFile(file, level("earth", 31), Compression_Types.NONE);
+        assertTrue(file.setLastModified(modified));
+        assertEquals(size, file.length());
+
+        assertTrue(index.isStale(file));
+        assertThrows(IOException.class, () -> index.read(file, "Data.Player"));
+        assertEquals("minecraft:cow", ((Tag_Compound) index.read(file, "Entities[1]")).getString("id"));
+
+        NBTIndex rebuilt = NBTIndex.loadOrBuild(file, 2);
+        assertEquals(31, ((Tag_Compound) rebuilt.read(file, "Data.Player")).getInt("XpLevel"));
+        assertFalse(NBTIndex.load(NBTIndex.sidecarFile(file)).isStale(file));
+    }
+
+    @Test
+    void testListsWithoutIndexedElementsAreSkipped() throws IOException
+    {
+        ICompoundTag root = NBTBuilder.compound("root")
+                .addList("floats", NBTTags.Tag_Float)
+                .addFloat("f", 1.5f).addFloat("f", 2.5f).addFloat("f", 3.5f)
+                .endCompound()
+                .addList("names", NBTTags.Tag_String)
+                .addString("s", "a").addString("s", "bc")
+                .endCompound()
+                .addList("nested", NBTTags.Tag_List)
+                .addList("inner", NBTTags.Tag_Compound)
+                .addCompound("c").addInt("v", 7).endList()
+                .endList()
+                .endCompound()
+                .addInt("after", 42)
+                .build();
+        File file = tempDir.resolve("lists.nbt").toFile();
+        NBTFileFactory.writeNBTFile(file, root, Compression_Types.NONE);
+
+        NBTIndex index = NBTIndex.build(file, 2);
+        assertEquals(List.of("floats", "names", "nested", "nested[0]"), List.copyOf(index.getPaths()));
+        assertEquals(NBTFileFactory.readNBTFile(file).getTag("floats"), index.read(file, "floats"));
+        assertEquals(NBTFileFactory.readNBTFile(file).getTag("names"), index.read(file, "names"));
+        assertEquals(List.of("floats", "names", "nested"), List.copyOf(NBTIndex.build(file, 1).getPaths()));
+    }
+
+    @Test
+    void testNamesAreEscaped() throws IOException
+    {
+        ICompoundTag root = NBTBuilder.compound("root")
+                .addCompound("a.b").addInt("dotted", 1).endCompound()
+                .addCompound("a")
+                .addCompound("b").addInt("nested", 2).endCompound()
+                .endCompound()
+                .addCompound("c[0]").addInt("bracketed", 3).endCompound()
+                .build();
+        File file = tempDir.resolve("names.nbt").toFile();
+        NBTFileFactory.writeNBTFile(file, root, Compression_Types.NONE);
+
+        NBTIndex index = NBTIndex.build(file, 2);
+        assertEquals(List.of("a\\.b", "a", "a.b", "c\\[0\\]"), List.copyOf(index.getPaths()));
+        assertEquals(1, ((Tag_Compound) index.read(file, NBTIndex.escapeName("a.b"))).getInt("dotted"));
+        assertEquals(2, ((Tag_Compound) index.read(file, "a.b")).getInt("nested"));
+        assertEquals(3, ((Tag_Compound) index.read(file, "c\\[0\\]")).getInt("bracketed"));
+        assertEquals("plain", NBTIndex.escapeName("plain"));
+        assertEquals("back\\\\slash", NBTIndex.escapeName("back\\slash"));
+    }
+
+    @Test
+    void testDuplicatePathsAreRejected() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(10);
+        out.writeUTF("root");
+        for (int i = 0; i < 2; i++)
+        {
+            out.writeByte(10);
+            out.writeUTF("twin");
+            out.writeByte(3);
+            out.writeUTF("v");
+            out.writeInt(i);
+            out.writeByte(0);
+        }
+        out.writeByte(0);
+        File file = tempDir.resolve("duplicates.nbt").toFile();
+        Files.write(file.toPath(), bytes.toByteArray());
+
+        IOException e = assertThrows(IOException.class, () -> NBTIndex.build(file, 1));
+        assertTrue(e.getMessage().contains("Duplicate tag path twin"), e.getMessage());
+    }
+}
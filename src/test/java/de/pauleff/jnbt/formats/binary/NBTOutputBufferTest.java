@@ -0,0 +1,46 @@
+package de.pauleff.jnbt.formats.binary;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NBTOutputBufferTest
+{
+    @Test
+    void testCollectsWritesIntoBlocks() throws IOException
+    {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        NBTOutputBuffer buffer = new NBTOutputBuffer(sink, 4);
+        buffer.write(new byte[]{1, 2, 3});
+        assertEquals(0, sink.size());
+        buffer.write(new byte[]{4, 5, 6, 7, 8}); // Larger than the buffer, bypasses it
+        assertEquals(8, sink.size());
+        buffer.write(9);
+        buffer.close();
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, sink.toByteArray());
+    }
+
+    @Test
+    void testResetKeepsBuffer() throws IOException
+    {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        NBTOutputBuffer buffer = new NBTOutputBuffer(first, 4);
+        buffer.write(new byte[]{1, 2});
+        buffer.flush();
+        buffer.write(3); // Not flushed, dropped by the reset
+        buffer.reset(second).write(10);
+        buffer.flush();
+        assertArrayEquals(new byte[]{1, 2}, first.toByteArray());
+        assertArrayEquals(new byte[]{10}, second.toByteArray());
+    }
+
+    @Test
+    void testRejectsInvalidSize()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new NBTOutputBuffer(new ByteArrayOutputStream(), 0));
+    }
+}
@@ -0,0 +1,291 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.api.NBTFileFactory;
+import de.pauleff.jnbt.builder.NBTBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static de.pauleff.jnbt.formats.binary.NBTSamples.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NBTReaderTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRoundTripAllCompressions() throws IOException
+    {
+        ICompoundTag original = sampleCompound();
+        for (Compression_Types compression : new Compression_Types[]{Compression_Types.NONE, Compression_Types.GZIP, Compression_Types.ZLIB})
+        {
+            File file = tempDir.resolve("sample_" + compression.getName() + ".dat").toFile();
+            NBTFileFactory.writeNBTFile(file, original, compression);
+            assertSampleEquals(original, NBTFileFactory.readNBTFile(file));
+        }
+    }
+
+    @Test
+    void testSmallBufferRefills() throws IOException
+    {
+        // A tiny buffer forces every primitive to straddle refills at some point
+        ICompoundTag original = sampleCompound();
+        byte[] data = encode(original);
+        PositionTrackingDataInputStream stream = new PositionTrackingDataInputStream(new ByteArrayInputStream(data), 16);
+        assertSampleEquals(original, new NBTReader(stream).read());
+        assertEquals(data.length, stream.getBytesRead());
+    }
+
+    @Test
+    void testTruncatedInputReportsPosition() throws IOException
+    {
+        byte[] data = encode(sampleCompound());
+        byte[] truncated = Arrays.copyOf(data, data.length / 2);
+        IOException e = assertThrows(IOException.class,
+                () -> new NBTReader(new DataInputStream(new ByteArrayInputStream(truncated))).read());
+        assertTrue(e.getMessage().contains("[Position:"));
+    }
+
+    @Test
+    void testMappedReader() throws IOException
+    {
+        ICompoundTag original = sampleCompound();
+        File file = tempDir.resolve("mapped.nbt").toFile();
+        NBTFileFactory.writeNBTFile(file, original, Compression_Types.NONE);
+        try (var reader = NBTFileFactory.createMappedReader(file))
+        {
+            assertSampleEquals(original, reader.read());
+        }
+
+        File compressed = tempDir.resolve("mapped_gzip.nbt").toFile();
+        NBTFileFactory.writeNBTFile(compressed, original, Compression_Types.GZIP);
+        assertThrows(IllegalArgumentException.class, () -> new MappedNBTReader(compressed));
+    }
+
+    @Test
+    void testSelectedPaths() throws IOException
+    {
+        File file = tempDir.resolve("selected.dat").toFile();
+        NBTFileFactory.writeNBTFile(file, sampleCompound(), Compression_Types.GZIP);
+
+        ICompoundTag selected = NBTFileFactory.readNBTFile(file, List.of("Data.Player", "int"));
+        assertEquals(2, selected.size());
+        assertEquals(42, selected.getInt("int"));
+        ICompoundTag data = selected.getCompound("Data");
+        assertEquals(1, data.size());
+        assertEquals(30, data.getCompound("Player").getInt("XpLevel"));
+        assertNull(selected.getLongArray("longs"));
+    }
+
+    @Test
+    void testSelectedPathsAreEscaped() throws IOException
+    {
+        ICompoundTag root = NBTBuilder.compound("root")
+                .addCompound("a.b").addInt("dotted", 1).endCompound()
+                .addCompound("a")
+                .addCompound("b").addInt("nested", 2).endCompound()
+                .endCompound()
+                .build();
+        byte[] data = encode(root);
+
+        ICompoundTag dotted = new NBTReader().select(List.of(NBTIndex.escapeName("a.b"))).read(data, 0, data.length);
+        assertEquals(1, dotted.size());
+        assertEquals(1, dotted.getCompound("a.b").getInt("dotted"));
+        ICompoundTag nested = new NBTReader().select(List.of("a.b")).read(data, 0, data.length);
+        assertEquals(2, nested.getCompound("a").getCompound("b").getInt("nested"));
+
+        NBTReader reader = new NBTReader();
+        for (String path : new String[]{"a..b", "a.", ".a", "Entities[0]", "a\\b", "a\\"})
+        {
+            assertThrows(IllegalArgumentException.class, () -> reader.select(List.of(path)), path);
+        }
+    }
+
+    @Test
+    void testNameCacheSharesInstances() throws IOException
+    {
+        byte[] data = encode(sampleCompound());
+        NBTNameCache cache = new NBTNameCache(1024);
+        ICompoundTag first = new NBTReader(new PositionTrackingDataInputStream(new ByteArrayInputStream(data))).setNameCache(cache).read();
+        ICompoundTag second = new NBTReader(new PositionTrackingDataInputStream(new ByteArrayInputStream(data))).setNameCache(cache).read();
+        assertSame(first.getTag("longs").getName(), second.getTag("longs").getName());
+        assertSame(cache.decode("Data".getBytes(), 0, 4), first.getTag("Data").getName());
+    }
+
+    @Test
+    void testDepthLimit() throws IOException
+    {
+        byte[] deep = nestedLists(100_000);
+        IOException e = assertThrows(IOException.class,
+                () -> new NBTReader(NBTReader.byteArrayToDataInputStream(deep)).read());
+        assertTrue(e.getMessage().contains("Maximum nesting depth of 512 exceeded"), e.getMessage());
+        assertTrue(e.getMessage().contains("Depth: 513"), e.getMessage());
+
+        ICompoundTag root = new NBTReader(NBTReader.byteArrayToDataInputStream(deep)).setLimits(ReaderLimits.builder().maxDepth(100_000).build()).read();
+        assertNotNull(root.getTag("nested"));
+        assertThrows(IOException.class,
+                () -> new NBTReader(NBTReader.byteArrayToDataInputStream(nestedLists(3))).setLimits(ReaderLimits.builder().maxDepth(2).build()).read());
+    }
+
+    @Test
+    void testReaderLimits() throws IOException
+    {
+        // Decompression bomb: a few KB of GZIP expanding to 64 MB
+        ICompoundTag bomb = NBTBuilder.compound("Bomb").addByteArray("zeros", new byte[64 * 1024 * 1024]).build();
+        File file = tempDir.resolve("bomb.dat").toFile();
+        NBTFileFactory.writeNBTFile(file, bomb, Compression_Types.GZIP);
+        ReaderLimits budget = ReaderLimits.builder().maxTotalBytes(1024 * 1024).build();
+        IOException e = assertThrows(IOException.class, () -> new NBTReader(file).setLimits(budget).read());
+        assertTrue(e.getMessage().contains("remaining byte budget"), e.getMessage());
+
+        // Header claiming a huge int array in an otherwise tiny input
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(10);
+        out.writeUTF("");
+        out.writeByte(11);
+        out.writeUTF("ints");
+        out.writeInt(50_000_000);
+        byte[] data = bytes.toByteArray();
+        e = assertThrows(IOException.class, () -> new NBTReader(NBTReader.byteArrayToDataInputStream(data))
+                .setLimits(ReaderLimits.builder().maxArrayLength(1_000_000).build()).read());
+        assertTrue(e.getMessage().contains("exceeds the limit of 1000000"), e.getMessage());
+
+        byte[] sample = encode(sampleCompound());
+        e = assertThrows(IOException.class, () -> new NBTReader(NBTReader.byteArrayToDataInputStream(sample))
+                .setLimits(ReaderLimits.builder().maxElements(5).build()).read());
+        assertTrue(e.getMessage().contains("limit of 5 elements"), e.getMessage());
+        e = assertThrows(IOException.class, () -> new NBTReader(NBTReader.byteArrayToDataInputStream(sample))
+                .setLimits(ReaderLimits.builder().maxTotalBytes(100).build()).read());
+        assertTrue(e.getMessage().contains("limit of 100 bytes"), e.getMessage());
+        assertSampleEquals(sampleCompound(), new NBTReader(NBTReader.byteArrayToDataInputStream(sample))
+                .setLimits(ReaderLimits.builder().maxTotalBytes(sample.length).build()).read());
+    }
+
+    @Test
+    void testHostileListHeader() throws IOException
+    {
+        // 5 million empty compounds need at least 5 MB, the input is 15 bytes
+        byte[] compounds = listHeader(10, 5_000_000);
+        IOException e = assertThrows(IOException.class, () -> new NBTReader(NBTReader.byteArrayToDataInputStream(compounds))
+                .setLimits(ReaderLimits.builder().maxTotalBytes(1024 * 1024).build()).read());
+        assertTrue(e.getMessage().contains("remaining byte budget"), e.getMessage());
+
+        byte[] huge = listHeader(1, 20_000_000);
+        e = assertThrows(IOException.class, () -> new NBTReader(NBTReader.byteArrayToDataInputStream(huge)).read());
+        assertTrue(e.getMessage().contains("exceeds the limit of " + ReaderLimits.DEFAULT_MAX_LIST_LENGTH), e.getMessage());
+
+        byte[] ends = listHeader(0, 1_000_000);
+        e = assertThrows(IOException.class, () -> new NBTReader(NBTReader.byteArrayToDataInputStream(ends)).read());
+        assertTrue(e.getMessage().contains("element type Tag_End"), e.getMessage());
+    }
+
+    @Test
+    void testReaderReset() throws IOException
+    {
+        ICompoundTag other = NBTBuilder.compound("Other").addString("id", "minecraft:stone").addInt("Count", 3).build();
+        File file = tempDir.resolve("reset.dat").toFile();
+        NBTFileFactory.writeNBTFile(file, sampleCompound(), Compression_Types.GZIP);
+
+        NBTReader reader = new NBTReader();
+        assertEquals(other, reader.reset(new ByteArrayInputStream(encode(other))).read());
+        assertSampleEquals(sampleCompound(), reader.reset(file).read());
+        assertEquals(other, reader.reset(new ByteArrayInputStream(encode(other))).read());
+
+        IOException e = assertThrows(IOException.class,
+                () -> reader.reset(new ByteArrayInputStream(new byte[]{10, 0})).read());
+        assertTrue(e.getMessage().contains("[Position: 1 bytes"), e.getMessage());
+        assertSampleEquals(sampleCompound(), reader.reset(file).read());
+    }
+
+    @Test
+    void testReadFromMemory() throws IOException
+    {
+        byte[] data = encode(sampleCompound());
+        byte[] packet = new byte[data.length + 7];
+        System.arraycopy(data, 0, packet, 3, data.length);
+        packet[3 + data.length] = 42;
+
+        NBTReader reader = new NBTReader();
+        assertSampleEquals(sampleCompound(), reader.read(packet, 3, data.length + 4));
+
+        ByteBuffer buffer = ByteBuffer.wrap(packet).position(3);
+        assertSampleEquals(sampleCompound(), reader.read(buffer));
+        assertEquals(3 + data.length, buffer.position());
+        assertEquals(42, buffer.get());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length).put(data).flip();
+        assertSampleEquals(sampleCompound(), reader.read(direct));
+        assertFalse(direct.hasRemaining());
+        assertThrows(IOException.class, () -> reader.read(data, 0, data.length - 1));
+    }
+
+    @Test
+    void testTolerantReadSalvagesCorruptedData() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(10);
+        out.writeUTF("root");
+        out.writeByte(8);
+        out.writeUTF("name");
+        out.writeShort(3);
+        out.write(new byte[]{'a', (byte) 0xC3, 'b'}); // broken two-byte sequence
+        out.writeByte(7);
+        out.writeUTF("big");
+        out.writeInt(100);
+        out.write(new byte[100]);
+        out.writeByte(3);
+        out.writeUTF("ok");
+        out.writeInt(1);
+        out.writeByte(10);
+        out.writeUTF("Data");
+        out.writeByte(3);
+        out.writeUTF("a");
+        out.writeInt(2);
+        out.writeByte(3);
+        out.writeUTF("b");
+        out.writeShort(0); // truncated in the middle of the int
+        byte[] data = bytes.toByteArray();
+
+        ReaderLimits limits = ReaderLimits.builder().maxArrayLength(10).build();
+        assertThrows(IOException.class, () -> new NBTReader().setLimits(limits).read(data, 0, data.length));
+
+        NBTSalvageResult result = new NBTReader().setLimits(limits).reset(new ByteArrayInputStream(data)).readTolerant();
+        assertFalse(result.isComplete());
+        ICompoundTag root = result.getRoot();
+        assertEquals("root", root.getName());
+        assertEquals("a\uFFFDb", root.getString("name"));
+        assertFalse(root.hasTag("big"));
+        assertEquals(1, root.getInt("ok"));
+        assertEquals(2, root.getCompound("Data").getInt("a"));
+        assertFalse(root.getCompound("Data").hasTag("b"));
+
+        List<NBTDiagnostic> diagnostics = result.getDiagnostics();
+        assertEquals(3, diagnostics.size(), diagnostics.toString());
+        assertTrue(diagnostics.get(1).getMessage().contains("byte array"), diagnostics.get(1).toString());
+        assertEquals("big", diagnostics.get(1).getTagName());
+        NBTDiagnostic last = diagnostics.get(2);
+        assertEquals(data.length - 2, last.getOffset());
+        assertEquals(2, last.getDepth());
+        assertEquals("b", last.getTagName());
+        assertFalse(last.getMessage().contains("[Position:"), last.getMessage());
+
+        NBTSalvageResult complete = new NBTReader(NBTReader.byteArrayToDataInputStream(encode(sampleCompound()))).readTolerant();
+        assertTrue(complete.isComplete());
+        assertSampleEquals(sampleCompound(), complete.getRoot());
+    }
+}
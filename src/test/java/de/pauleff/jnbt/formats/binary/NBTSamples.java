@@ -0,0 +1,136 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.builder.NBTBuilder;
+import de.pauleff.jnbt.util.NBTTags;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test data shared by the binary format tests.
+ */
+final class NBTSamples
+{
+    private NBTSamples()
+    {
+    }
+
+    /**
+     * Compound holding every primitive type, arrays larger than the encoding buffers and a nested compound.
+     */
+    static ICompoundTag sampleCompound()
+    {
+        long[] longs = new long[10_000];
+        int[] ints = new int[7_777];
+        byte[] bytes = new byte[100_000];
+        for (int i = 0; i < longs.length; i++) longs[i] = i * 0x0102030405L;
+        for (int i = 0; i < ints.length; i++) ints[i] = -i * 31;
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) i;
+
+        return NBTBuilder.compound("Level")
+                .addByte("byte", (byte) -5)
+                .addShort("short", (short) 1234)
+                .addInt("int", 42)
+                .addLong("long", Long.MIN_VALUE)
+                .addFloat("float", 1.5f)
+                .addDouble("double", -2.25)
+                .addString("string", "Grüße")
+                .addByteArray("bytes", bytes)
+                .addIntArray("ints", ints)
+                .addLongArray("longs", longs)
+                .addCompound("Data")
+                .addString("LevelName", "world")
+                .addCompound("Player")
+                .addInt("XpLevel", 30)
+                .endCompound()
+                .endCompound()
+                .build();
+    }
+
+    /**
+     * Small tree with lists of compounds, an empty list and strings needing multi-byte encoding.
+     */
+    static ICompoundTag inventory()
+    {
+        return NBTBuilder.compound("Inventory")
+                .addList("Items", NBTTags.Tag_Compound)
+                .addCompound("a").addString("id", "minecraft:stone").addByte("Count", (byte) 64).endList()
+                .addCompound("b").addString("id", "minecraft:dirt").addString("Name", "Grüße \u0000 \uD83D\uDE00").endList()
+                .endCompound()
+                .addList("Empty", NBTTags.Tag_End).endCompound()
+                .addCompound("Nested").addIntArray("ints", new int[]{1, 2, 3}).endCompound()
+                .build();
+    }
+
+    /**
+     * Encodes a tree uncompressed through the stream path of {@link NBTWriter}.
+     */
+    static byte[] encode(ICompoundTag root) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new NBTWriter(new DataOutputStream(bytes)).write(root);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Compares a decoded tree to the {@link #sampleCompound()} it was encoded from.
+     */
+    static void assertSampleEquals(ICompoundTag expected, ICompoundTag actual)
+    {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getByte("byte"), actual.getByte("byte"));
+        assertEquals(expected.getShort("short"), actual.getShort("short"));
+        assertEquals(expected.getInt("int"), actual.getInt("int"));
+        assertEquals(expected.getLong("long"), actual.getLong("long"));
+        assertEquals(expected.getFloat("float"), actual.getFloat("float"));
+        assertEquals(expected.getDouble("double"), actual.getDouble("double"));
+        assertEquals(expected.getString("string"), actual.getString("string"));
+        assertArrayEquals(expected.getByteArray("bytes"), actual.getByteArray("bytes"));
+        assertArrayEquals(expected.getIntArray("ints"), actual.getIntArray("ints"));
+        assertArrayEquals(expected.getLongArray("longs"), actual.getLongArray("longs"));
+        assertEquals("world", actual.getCompound("Data").getString("LevelName"));
+        assertEquals(30, actual.getCompound("Data").getCompound("Player").getInt("XpLevel"));
+    }
+
+    /**
+     * Root compound holding a chain of nested, single element lists of the given depth.
+     */
+    static byte[] nestedLists(int depth) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(10);
+        out.writeUTF("");
+        out.writeByte(9);
+        out.writeUTF("nested");
+        for (int i = 1; i < depth; i++)
+        {
+            out.writeByte(9);
+            out.writeInt(1);
+        }
+        out.writeByte(0);
+        out.writeInt(0);
+        out.writeByte(0);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encodes a root compound holding a list header that claims the given number of elements, without any payload.
+     */
+    static byte[] listHeader(int listType, int count) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(10);
+        out.writeUTF("");
+        out.writeByte(9);
+        out.writeUTF("l");
+        out.writeByte(listType);
+        out.writeInt(count);
+        return bytes.toByteArray();
+    }
+}
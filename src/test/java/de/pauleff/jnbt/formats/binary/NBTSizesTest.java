@@ -0,0 +1,38 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.builder.NBTBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static de.pauleff.jnbt.formats.binary.NBTSamples.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NBTSizesTest
+{
+    @Test
+    void testSizeMatchesEncoding() throws IOException
+    {
+        for (ICompoundTag tree : new ICompoundTag[]{inventory(), sampleCompound()})
+        {
+            byte[] expected = encode(tree);
+            assertEquals(expected.length, NBTSizes.sizeOf(tree));
+        }
+        assertEquals(4 + 3 * Integer.BYTES, NBTSizes.payloadSizeOf(inventory().getCompound("Nested").getTag("ints")));
+    }
+
+    @Test
+    void testMultiByteNamesAndStrings() throws IOException
+    {
+        // Short in chars but long in bytes, and the same instance measured repeatedly
+        String name = "\u00e4\u20ac".repeat(30);
+        ICompoundTag root = NBTBuilder.compound(name)
+                .addString(name, name)
+                .addCompound(name).addString("x", "\u0000".repeat(40)).endCompound()
+                .build();
+        byte[] expected = encode(root);
+        assertEquals(expected.length, NBTSizes.sizeOf(root));
+        assertEquals(2 + ModifiedUTF8.encodedLength(name), NBTSizes.payloadSizeOf(root.getTag(name)));
+    }
+}
@@ -0,0 +1,193 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.builder.NBTBuilder;
+import de.pauleff.jnbt.util.NBTTags;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NBTStreamReaderTest
+{
+
+    private static NBTStreamReader readerFor(ICompoundTag root) throws IOException
+    {
+        byte[] data = NBTSamples.encode(root);
+        return new NBTStreamReader(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    void testEventSequence() throws IOException
+    {
+        ICompoundTag root = NBTBuilder.compound("root")
+                .addInt("a", 7)
+                .addList("items", NBTTags.Tag_Compound)
+                .addCompound("item").addString("id", "stone").endList()
+                .endCompound()
+                .addLongArray("longs", new long[]{1L, 2L})
+                .build();
+
+        List<String> events = new ArrayList<>();
+        try (NBTStreamReader reader = readerFor(root))
+        {
+            NBTStreamReader.Event event;
+            while ((event = reader.next()) != NBTStreamReader.Event.END_DOCUMENT)
+            {
+                events.add(event + ":" + reader.getName() + ":" + reader.getDepth());
+                if (event == NBTStreamReader.Event.START_LIST)
+                {
+                    assertEquals(10, reader.getListType());
+                    assertEquals(1, reader.getListLength());
+                }
+                if ("id".equals(reader.getName()))
+                {
+                    assertFalse(reader.isInList());
+                    assertEquals("stone", reader.getString());
+                }
+                if ("a".equals(reader.getName()))
+                {
+                    assertEquals(7, reader.getInt());
+                }
+            }
+        }
+
+        assertEquals(List.of(
+                "START_COMPOUND:root:0",
+                "VALUE:a:1",
+                "START_LIST:items:1",
+                "START_COMPOUND::2",
+                "VALUE:id:3",
+                "END_COMPOUND::2",
+                "END_LIST:items:1",
+                "VALUE:longs:1",
+                "END_COMPOUND:root:0"), events);
+    }
+
+    @Test
+    void testSkipChildrenAndUnreadPayloads() throws IOException
+    {
+        ICompoundTag original = NBTSamples.sampleCompound();
+        try (NBTStreamReader reader = readerFor(original))
+        {
+            assertEquals(NBTStreamReader.Event.START_COMPOUND, reader.next());
+            String levelName = null;
+            long[] longs = null;
+            while (reader.next() != NBTStreamReader.Event.END_DOCUMENT)
+            {
+                if (reader.getName().equals("longs"))
+                {
+                    longs = reader.getLongArray();
+                } else if (reader.getName().equals("Data") && reader.getEvent() == NBTStreamReader.Event.START_COMPOUND)
+                {
+                    reader.next();
+                    levelName = reader.getString();
+                    reader.next();
+                    assertEquals("Player", reader.getName());
+                    reader.skipChildren();
+                    assertEquals(NBTStreamReader.Event.END_COMPOUND, reader.getEvent());
+                }
+            }
+            assertEquals("world", levelName);
+            assertArrayEquals(original.getLongArray("longs"), longs);
+        }
+    }
+
+    @Test
+    void testWrongValueAccessor() throws IOException
+    {
+        try (NBTStreamReader reader = readerFor(NBTBuilder.compound("root").addInt("a", 1).build()))
+        {
+            reader.next();
+            reader.next();
+            assertThrows(IllegalStateException.class, reader::getLong);
+        }
+    }
+
+    @Test
+    void testReaderLimits() throws IOException
+    {
+        // Header claiming a huge int array in an otherwise tiny input
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(10);
+        out.writeUTF("");
+        out.writeByte(11);
+        out.writeUTF("ints");
+        out.writeInt(50_000_000);
+        byte[] hostile = bytes.toByteArray();
+
+        NBTStreamReader budget = new NBTStreamReader(NBTReader.byteArrayToDataInputStream(hostile))
+                .setLimits(ReaderLimits.builder().maxTotalBytes(1024).build());
+        budget.next();
+        IOException e = assertThrows(IOException.class, budget::next);
+        assertTrue(e.getMessage().contains("remaining byte budget"), e.getMessage());
+
+        NBTStreamReader arrays = new NBTStreamReader(NBTReader.byteArrayToDataInputStream(hostile))
+                .setLimits(ReaderLimits.builder().maxArrayLength(1_000).build());
+        arrays.next();
+        e = assertThrows(IOException.class, arrays::next);
+        assertTrue(e.getMessage().contains("exceeds the limit of 1000"), e.getMessage());
+        assertThrows(IllegalStateException.class, () -> arrays.setLimits(ReaderLimits.DEFAULT));
+
+        ICompoundTag nested = NBTBuilder.compound("root")
+                .addCompound("a").addCompound("b").addInt("c", 1).endCompound().endCompound()
+                .build();
+        try (NBTStreamReader reader = readerFor(nested))
+        {
+            reader.setLimits(ReaderLimits.builder().maxDepth(1).build());
+            reader.next();
+            reader.next();
+            e = assertThrows(IOException.class, reader::next);
+            assertTrue(e.getMessage().contains("depth of 1"), e.getMessage());
+        }
+        try (NBTStreamReader reader = readerFor(nested))
+        {
+            reader.setLimits(ReaderLimits.builder().maxElements(3).build());
+            reader.next();
+            reader.next();
+            reader.next();
+            e = assertThrows(IOException.class, reader::next);
+            assertTrue(e.getMessage().contains("limit of 3 elements"), e.getMessage());
+        }
+    }
+
+    @Test
+    void testTagEndListRejectedLikeFullRead() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(10);
+        out.writeUTF("");
+        out.writeByte(9);
+        out.writeUTF("ends");
+        out.writeByte(0);
+        out.writeInt(3);
+        out.writeByte(3);
+        out.writeUTF("after");
+        out.writeInt(1);
+        out.writeByte(0);
+        byte[] data = bytes.toByteArray();
+
+        IOException streamed = assertThrows(IOException.class, () ->
+        {
+            NBTStreamReader reader = new NBTStreamReader(NBTReader.byteArrayToDataInputStream(data));
+            while (reader.next() != NBTStreamReader.Event.END_DOCUMENT) ;
+        });
+        IOException full = assertThrows(IOException.class,
+                () -> new NBTReader(NBTReader.byteArrayToDataInputStream(data)).read());
+        IOException selected = assertThrows(IOException.class,
+                () -> new NBTReader(NBTReader.byteArrayToDataInputStream(data)).select(List.of("after")).read());
+        for (IOException e : List.of(streamed, full, selected))
+        {
+            assertTrue(e.getMessage().contains("element type Tag_End"), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.builder.NBTBuilder;
+import de.pauleff.jnbt.util.NBTTags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NBTStreamWriterTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMatchesTreeEncoding() throws IOException
+    {
+        long[] longs = new long[5_000];
+        for (int i = 0; i < longs.length; i++) longs[i] = i * 0x0102030405L;
+        int[] ints = {1, -2, 3};
+        ICompoundTag expected = NBTBuilder.compound("root")
+                .addByte("b", (byte) -1)
+                .addShort("s", (short) 300)
+                .addInt("i", 7)
+                .addLong("l", 1L << 40)
+                .addFloat("f", 1.5f)
+                .addDouble("d", -2.25)
+                .addString("name", "Stream ä\u0000")
+                .addByteArray("bytes", new byte[]{1, 2, 3})
+                .addIntArray("ints", ints)
+                .addLongArray("longs", longs)
+                .addList("items", NBTTags.Tag_Compound)
+                .addCompound("item").addString("id", "stone").endList()
+                .addCompound("item").addString("id", "dirt").endList()
+                .endCompound()
+                .addList("numbers", NBTTags.Tag_Int)
+                .addInt("n", 1).addInt("n", 2)
+                .endCompound()
+                .build();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (NBTStreamWriter writer = new NBTStreamWriter(new DataOutputStream(bytes)))
+        {
+            writer.beginCompound("root")
+                    .writeByte("b", (byte) -1)
+                    .writeShort("s", (short) 300)
+                    .writeInt("i", 7)
+                    .writeLong("l", 1L << 40)
+                    .writeFloat("f", 1.5f)
+                    .writeDouble("d", -2.25)
+                    .writeString("name", "Stream ä\u0000")
+                    .writeByteArray("bytes", new byte[]{1, 2, 3})
+                    .writeIntArray("ints", ints)
+                    .writeLongArray("longs", longs)
+                    .beginList("items", NBTTags.Tag_Compound, 2);
+            for (String id : new String[]{"stone", "dirt"})
+            {
+                writer.beginCompound(null).writeString("id", id).endCompound();
+            }
+            writer.endList()
+                    .beginList("numbers", NBTTags.Tag_Int, 2)
+                    .writeInt(null, 1).writeInt(null, 2)
+                    .endList();
+            assertEquals(1, writer.getDepth());
+            writer.endCompound();
+            assertTrue(writer.isFinished());
+        }
+
+        assertArrayEquals(NBTSamples.encode(expected), bytes.toByteArray());
+    }
+
+    @Test
+    void testFileOutputMatchesTreeEncoding() throws IOException
+    {
+        ICompoundTag sample = NBTSamples.sampleCompound();
+        for (int bufferSize : new int[]{1, 7, 64, 64 * 1024})
+        {
+            File file = tempDir.resolve("stream-" + bufferSize + ".nbt").toFile();
+            WriterSettings settings = WriterSettings.builder().bufferSize(bufferSize).build();
+            try (NBTStreamWriter writer = new NBTStreamWriter(file, Compression_Types.NONE, settings))
+            {
+                writer.beginCompound(sample.getName())
+                        .writeByte("byte", sample.getByte("byte"))
+                        .writeShort("short", sample.getShort("short"))
+                        .writeInt("int", sample.getInt("int"))
+                        .writeLong("long", sample.getLong("long"))
+                        .writeFloat("float", sample.getFloat("float"))
+                        .writeDouble("double", sample.getDouble("double"))
+                        .writeString("string", sample.getString("string"))
+                        .writeByteArray("bytes", sample.getByteArray("bytes"))
+                        .writeIntArray("ints", sample.getIntArray("ints"))
+                        .writeLongArray("longs", sample.getLongArray("longs"))
+                        .beginCompound("Data")
+                        .writeString("LevelName", "world")
+                        .beginCompound("Player").writeInt("XpLevel", 30).endCompound()
+                        .endCompound()
+                        .endCompound();
+            }
+            assertArrayEquals(NBTSamples.encode(sample), Files.readAllBytes(file.toPath()), "Buffer size " + bufferSize);
+        }
+    }
+
+    @Test
+    void testOversizedStringLeavesNoDanglingHeader() throws IOException
+    {
+        String oversized = "x".repeat(70_000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (NBTStreamWriter writer = new NBTStreamWriter(new DataOutputStream(bytes)))
+        {
+            writer.beginCompound("root").beginList("names", NBTTags.Tag_String, 1);
+            assertThrows(UTFDataFormatException.class, () -> writer.writeString(null, oversized));
+            writer.writeString(null, "short").endList();
+            assertThrows(UTFDataFormatException.class, () -> writer.writeString("big", oversized));
+            assertThrows(UTFDataFormatException.class, () -> writer.writeInt(oversized, 1));
+            writer.endCompound();
+        }
+
+        ICompoundTag expected = NBTBuilder.compound("root")
+                .addList("names", NBTTags.Tag_String)
+                .addString("name", "short")
+                .endCompound()
+                .build();
+        assertArrayEquals(NBTSamples.encode(expected), bytes.toByteArray());
+    }
+
+    @Test
+    void testValidatesStructure() throws IOException
+    {
+        NBTStreamWriter writer = new NBTStreamWriter(new DataOutputStream(new ByteArrayOutputStream()));
+        assertThrows(IllegalStateException.class, () -> writer.writeInt("a", 1));
+        assertThrows(IllegalStateException.class, writer::endCompound);
+
+        writer.beginCompound("root");
+        assertThrows(IllegalArgumentException.class, () -> writer.writeInt(null, 1));
+        assertThrows(IllegalStateException.class, writer::endList);
+        assertThrows(IllegalArgumentException.class, () -> writer.beginList("empty", NBTTags.Tag_End, 1));
+
+        writer.beginList("ints", NBTTags.Tag_Int, 2).writeInt(null, 1);
+        assertThrows(IllegalStateException.class, () -> writer.writeLong(null, 2L));
+        assertThrows(IllegalStateException.class, () -> writer.beginCompound(null));
+        assertThrows(IllegalStateException.class, writer::endList);
+        assertThrows(IllegalStateException.class, writer::endCompound);
+        writer.writeInt(null, 2);
+        assertThrows(IllegalStateException.class, () -> writer.writeInt(null, 3));
+        writer.endList().endCompound();
+
+        assertThrows(IllegalStateException.class, () -> writer.beginCompound("second"));
+        writer.close();
+    }
+
+    @Test
+    void testIncompleteDocumentEndsAfterLastTag() throws IOException
+    {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(expected);
+        out.writeByte(10);
+        out.writeUTF("root");
+        out.writeByte(3);
+        out.writeUTF("a");
+        out.writeInt(1);
+
+        File file = tempDir.resolve("partial.nbt").toFile();
+        NBTStreamWriter writer = new NBTStreamWriter(file, Compression_Types.NONE);
+        writer.beginCompound("root").writeInt("a", 1);
+        assertThrows(IllegalStateException.class, writer::close);
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file.toPath()));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NBTStreamWriter streamWriter = new NBTStreamWriter(new DataOutputStream(bytes));
+        streamWriter.beginCompound("root").writeInt("a", 1);
+        assertThrows(IllegalStateException.class, streamWriter::close);
+        assertArrayEquals(expected.toByteArray(), bytes.toByteArray());
+    }
+
+    @Test
+    void testWritesAfterCloseAreRejected() throws IOException
+    {
+        NBTStreamWriter writer = new NBTStreamWriter(new DataOutputStream(new ByteArrayOutputStream()));
+        writer.beginCompound("root").beginCompound("nested").beginList("l", NBTTags.Tag_Int, 1);
+        assertThrows(IllegalStateException.class, writer::close);
+
+        assertThrows(IllegalStateException.class, () -> writer.writeInt(null, 1));
+        assertThrows(IllegalStateException.class, () -> writer.beginCompound(null));
+        assertThrows(IllegalStateException.class, writer::endList);
+        assertThrows(IllegalStateException.class, writer::endCompound);
+        assertThrows(IllegalStateException.class, writer::flush);
+        writer.close(); // Closing again is a no-op
+    }
+
+    @Test
+    void testIncompleteAtomicSaveKeepsTarget() throws IOException
+    {
+        File file = tempDir.resolve("export.dat").toFile();
+        ICompoundTag original = NBTBuilder.compound("old").addInt("v", 1).build();
+        new NBTWriter(file, Compression_Types.GZIP).write(original);
+        byte[] before = Files.readAllBytes(file.toPath());
+
+        WriterSettings settings = WriterSettings.builder().atomicSave(true).backupMode(WriterSettings.BackupMode.NONE).build();
+        NBTStreamWriter writer = new NBTStreamWriter(file, Compression_Types.GZIP, settings);
+        writer.beginCompound("new").beginList("rows", NBTTags.Tag_Long, 3).writeLong(null, 1L);
+        assertThrows(IllegalStateException.class, writer::close);
+        assertArrayEquals(before, Files.readAllBytes(file.toPath()));
+
+        try (NBTStreamWriter complete = new NBTStreamWriter(file, Compression_Types.GZIP, settings))
+        {
+            complete.beginCompound("new").writeInt("v", 2).endCompound();
+        }
+        ICompoundTag read = new NBTReader(file).read();
+        assertEquals("new", read.getName());
+        assertEquals(2, read.getInt("v"));
+    }
+}
@@ -0,0 +1,91 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.NBTFileFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NBTValidatorTest
+{
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testValidFiles() throws IOException
+    {
+        byte[] data = NBTSamples.encode(NBTSamples.sampleCompound());
+        assertTrue(new NBTValidator().validate(ByteBuffer.wrap(data)).isValid());
+
+        File file = tempDir.resolve("sample.dat").toFile();
+        NBTFileFactory.writeNBTFile(file, NBTSamples.sampleCompound(), Compression_Types.GZIP);
+        assertTrue(NBTFileFactory.isValidNBTFile(file));
+    }
+
+    @Test
+    void testReportsFirstErrorWithOffset() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(10);
+        out.writeUTF("root");
+        out.writeByte(8);
+        out.writeUTF("ok");
+        out.writeUTF("fine");
+        out.writeByte(8);
+        out.writeShort(2);
+        out.write(new byte[]{(byte) 0xC3, 0x41}); // broken two-byte sequence in the name
+        out.writeUTF("value");
+        out.writeByte(0);
+        byte[] data = bytes.toByteArray();
+
+        NBTValidator.Result result = new NBTValidator().validate(ByteBuffer.wrap(data));
+        assertFalse(result.isValid());
+        assertEquals(7 + 11 + 3, result.getOffset());
+        assertTrue(result.getMessage().contains("tag name"), result.getMessage());
+
+        result = new NBTValidator().validate(ByteBuffer.wrap(data, 0, 12));
+        assertFalse(result.isValid());
+        assertEquals(12, result.getOffset());
+        result = new NBTValidator().setLimits(ReaderLimits.builder().maxTotalBytes(12).build()).validate(ByteBuffer.wrap(data));
+        assertEquals("Input exceeds the limit of 12 bytes", result.getMessage());
+
+        File file = tempDir.resolve("broken.dat").toFile();
+        Files.write(file.toPath(), data);
+        assertFalse(NBTFileFactory.isValidNBTFile(file));
+    }
+
+    @Test
+    void testLimits() throws IOException
+    {
+        byte[] deep = NBTSamples.nestedLists(600);
+        NBTValidator.Result result = new NBTValidator().validate(ByteBuffer.wrap(deep));
+        assertFalse(result.isValid());
+        assertTrue(result.getMessage().contains("nesting depth"), result.getMessage());
+        assertTrue(new NBTValidator().setLimits(ReaderLimits.builder().maxDepth(600).build())
+                .validate(ByteBuffer.wrap(deep)).isValid());
+
+        byte[] data = NBTSamples.encode(NBTSamples.sampleCompound());
+        result = new NBTValidator().setLimits(ReaderLimits.builder().maxArrayLength(50_000).build())
+                .validate(ByteBuffer.wrap(data));
+        assertFalse(result.isValid());
+        assertTrue(result.getMessage().contains("byte array"), result.getMessage());
+        result = new NBTValidator().setLimits(ReaderLimits.builder().maxTotalBytes(1024 * 1024).build())
+                .validate(ByteBuffer.wrap(NBTSamples.listHeader(10, 5_000_000)));
+        assertFalse(result.isValid());
+        assertTrue(result.getMessage().contains("byte limit"), result.getMessage());
+        result = new NBTValidator().validate(ByteBuffer.wrap(NBTSamples.listHeader(1, 20_000_000)));
+        assertTrue(result.getMessage().contains("exceeds the limit of " + ReaderLimits.DEFAULT_MAX_LIST_LENGTH), result.getMessage());
+        result = new NBTValidator().validate(ByteBuffer.wrap(NBTSamples.listHeader(0, 1)));
+        assertTrue(result.getMessage().contains("element type Tag_End"), result.getMessage());
+    }
+}
@@ -0,0 +1,206 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.builder.NBTBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NBTWriterTest
+{
+    @TempDir
+    Path tempDir;
+
+    // Empty, odd and larger than the 8 KiB encode buffer
+    private static final int[] LENGTHS = {0, 3, 5_001};
+
+    @Test
+    void testWriteIntArrays() throws IOException
+    {
+        for (int length : LENGTHS)
+        {
+            int[] values = new int[length];
+            for (int i = 0; i < length; i++) values[i] = i * 0x01020304 ^ -i;
+            ICompoundTag root = NBTBuilder.compound("r").addIntArray("a", values).build();
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            DataOutputStream out = header(expected, 11, values.length);
+            for (int value : values) out.writeInt(value);
+            out.writeByte(0);
+
+            assertArrayEquals(expected.toByteArray(), NBTWriter.toByteArray(root));
+            assertArrayEquals(expected.toByteArray(), NBTSamples.encode(root));
+        }
+    }
+
+    @Test
+    void testWriteLongArrays() throws IOException
+    {
+        for (int length : LENGTHS)
+        {
+            long[] values = new long[length];
+            for (int i = 0; i < length; i++) values[i] = i * 0x0102030405060708L ^ -i;
+            ICompoundTag root = NBTBuilder.compound("r").addLongArray("a", values).build();
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            DataOutputStream out = header(expected, 12, values.length);
+            for (long value : values) out.writeLong(value);
+            out.writeByte(0);
+
+            assertArrayEquals(expected.toByteArray(), NBTWriter.toByteArray(root));
+            assertArrayEquals(expected.toByteArray(), NBTSamples.encode(root));
+        }
+    }
+
+    @Test
+    void testExactSizeEncoding() throws IOException
+    {
+        for (ICompoundTag tree : new ICompoundTag[]{NBTSamples.inventory(), NBTSamples.sampleCompound()})
+        {
+            byte[] expected = NBTSamples.encode(tree);
+            assertArrayEquals(expected, NBTWriter.toByteArray(tree));
+
+            ByteBuffer direct = NBTWriter.toDirectBuffer(tree);
+            assertTrue(direct.isDirect());
+            assertEquals(expected.length, direct.remaining());
+            byte[] copy = new byte[direct.remaining()];
+            direct.get(copy);
+            assertArrayEquals(expected, copy);
+        }
+    }
+
+    @Test
+    void testWriteToBufferAndChannel() throws IOException
+    {
+        ICompoundTag original = NBTSamples.sampleCompound();
+        byte[] expected = NBTSamples.encode(original);
+
+        for (ByteBuffer target : new ByteBuffer[]{ByteBuffer.allocate(expected.length + 10), ByteBuffer.allocateDirect(expected.length + 10)})
+        {
+            target.order(ByteOrder.LITTLE_ENDIAN).position(3);
+            NBTWriter.writeTo(original, target);
+            assertEquals(3 + expected.length, target.position());
+            byte[] written = new byte[expected.length];
+            target.position(3);
+            target.get(written);
+            assertArrayEquals(expected, written);
+        }
+
+        ByteBuffer small = ByteBuffer.allocate(expected.length - 1);
+        assertThrows(BufferOverflowException.class, () -> NBTWriter.writeTo(original, small));
+        assertEquals(0, small.position());
+
+        Path path = tempDir.resolve("channel.nbt");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+        {
+            assertEquals(expected.length, NBTWriter.writeTo(original, channel));
+            assertTrue(channel.isOpen());
+        }
+        assertArrayEquals(expected, Files.readAllBytes(path));
+    }
+
+    @Test
+    void testRepeatedChannelWrites() throws IOException
+    {
+        // Large and small trees in turn, so the reused first chunk must start out empty every time
+        ICompoundTag small = NBTBuilder.compound("packet").addInt("id", 7).build();
+        ICompoundTag large = NBTSamples.sampleCompound();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        try (WritableByteChannel channel = Channels.newChannel(written))
+        {
+            for (ICompoundTag tree : new ICompoundTag[]{small, large, small, small, large})
+            {
+                byte[] bytes = NBTSamples.encode(tree);
+                expected.write(bytes);
+                assertEquals(bytes.length, NBTWriter.writeTo(tree, new GatheringChannel(channel)));
+            }
+        }
+        assertArrayEquals(expected.toByteArray(), written.toByteArray());
+    }
+
+    @Test
+    void testEncodesIntoFileBuffer() throws IOException
+    {
+        ICompoundTag original = NBTSamples.sampleCompound();
+        byte[] expected = NBTSamples.encode(original);
+        // Smaller than a long, exactly a long, odd and the default
+        for (int size : new int[]{7, 8, 13, WriterSettings.DEFAULT_BUFFER_SIZE})
+        {
+            File file = tempDir.resolve("buffer_" + size + ".nbt").toFile();
+            new NBTWriter(file, Compression_Types.NONE, WriterSettings.builder().bufferSize(size).build()).write(original);
+            assertArrayEquals(expected, Files.readAllBytes(file.toPath()), "Buffer size " + size);
+        }
+    }
+
+    /**
+     * Writes the root compound header and the header of its single array tag {@code "a"}.
+     */
+    private static DataOutputStream header(ByteArrayOutputStream bytes, int type, int length) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(10);
+        out.writeUTF("r");
+        out.writeByte(type);
+        out.writeUTF("a");
+        out.writeInt(length);
+        return out;
+    }
+
+    /**
+     * Minimal gathering channel on top of any channel, writing one buffer at a time.
+     */
+    private record GatheringChannel(WritableByteChannel channel) implements GatheringByteChannel
+    {
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException
+        {
+            long written = 0;
+            for (int i = offset; i < offset + length; i++)
+            {
+                written += channel.write(srcs[i]);
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException
+        {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException
+        {
+            return channel.write(src);
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+}
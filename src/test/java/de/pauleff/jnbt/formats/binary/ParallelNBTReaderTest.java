@@ -0,0 +1,101 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.api.NBTFileFactory;
+import de.pauleff.jnbt.builder.CompoundBuilder;
+import de.pauleff.jnbt.builder.NBTBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelNBTReaderTest
+{
+    @TempDir
+    Path tempDir;
+
+    /**
+     * A schematic-like file whose bulk sits in one compound of 200 chunks.
+     */
+    private static ICompoundTag schematic()
+    {
+        CompoundBuilder builder = NBTBuilder.compound("Schematic").addCompound("Blocks");
+        for (int i = 0; i < 200; i++)
+        {
+            builder.addCompound("chunk" + i)
+                    .addIntArray("states", new int[i * 10])
+                    .addString("biome", "plains" + i)
+                    .endCompound();
+        }
+        return builder.endCompound().addInt("Version", 3).build();
+    }
+
+    @Test
+    void testMatchesSequentialRead() throws IOException
+    {
+        ICompoundTag original = schematic();
+        byte[] data = NBTWriter.toByteArray(original);
+
+        assertArrayEquals(data, NBTWriter.toByteArray(new ParallelNBTReader(ByteBuffer.wrap(data)).read()));
+        assertArrayEquals(data, NBTWriter.toByteArray(
+                new ParallelNBTReader(ByteBuffer.wrap(data)).setSplitDepth(3).setMinSliceSize(64).read()));
+
+        File file = tempDir.resolve("schematic.nbt").toFile();
+        NBTFileFactory.writeNBTFile(file, original, Compression_Types.GZIP);
+        assertArrayEquals(data, NBTWriter.toByteArray(NBTFileFactory.createParallelReader(file).setSplitDepth(2).read()));
+        File plain = tempDir.resolve("schematic_plain.nbt").toFile();
+        NBTFileFactory.writeNBTFile(plain, original, Compression_Types.NONE);
+        assertArrayEquals(data, NBTWriter.toByteArray(new ParallelNBTReader(plain).read()));
+
+        assertThrows(FileNotFoundException.class, () -> new ParallelNBTReader(tempDir.resolve("missing.nbt").toFile()));
+    }
+
+    @Test
+    void testCorruptedEntry() throws IOException
+    {
+        byte[] data = NBTWriter.toByteArray(schematic());
+        // Corrupt the type ID in front of the last entry's name
+        int version = new String(data, StandardCharsets.ISO_8859_1).lastIndexOf("Version");
+        data[version - 3] = 99;
+        IOException e = assertThrows(IOException.class,
+                () -> new ParallelNBTReader(ByteBuffer.wrap(data)).setSplitDepth(2).setMinSliceSize(64).read());
+        assertTrue(e.getMessage().contains("99"), e.getMessage());
+    }
+
+    @Test
+    void testReaderLimits() throws IOException
+    {
+        byte[] data = NBTWriter.toByteArray(schematic());
+
+        // 1 + 1 + 200 * 3 + 1 elements in total
+        IOException e = assertThrows(IOException.class, () -> new ParallelNBTReader(ByteBuffer.wrap(data))
+                .setSplitDepth(2).setMinSliceSize(64).setLimits(ReaderLimits.builder().maxElements(600).build()).read());
+        assertTrue(e.getMessage().contains("limit of 600 elements"), e.getMessage());
+        assertNotNull(new ParallelNBTReader(ByteBuffer.wrap(data)).setSplitDepth(2).setMinSliceSize(64)
+                .setLimits(ReaderLimits.builder().maxElements(603).build()).read());
+
+        // The chunks sit at depth 2 and are decoded by slices, not by the scan
+        e = assertThrows(IOException.class, () -> new ParallelNBTReader(ByteBuffer.wrap(data))
+                .setLimits(ReaderLimits.builder().maxDepth(1).build()).read());
+        assertTrue(e.getMessage().contains("nesting depth of 1"), e.getMessage());
+
+        e = assertThrows(IOException.class, () -> new ParallelNBTReader(ByteBuffer.wrap(data)).setMinSliceSize(64)
+                .setLimits(ReaderLimits.builder().maxTotalBytes(data.length / 2).build()).read());
+        assertTrue(e.getMessage().contains("limit of " + data.length / 2 + " bytes"), e.getMessage());
+
+        // Decompression bomb: only the budget plus one byte is ever inflated
+        File bomb = tempDir.resolve("bomb.dat").toFile();
+        NBTFileFactory.writeNBTFile(bomb, NBTBuilder.compound("Bomb").addByteArray("zeros", new byte[64 * 1024 * 1024]).build(),
+                Compression_Types.GZIP);
+        e = assertThrows(IOException.class, () -> new ParallelNBTReader(bomb)
+                .setLimits(ReaderLimits.builder().maxTotalBytes(1024 * 1024).build()).read());
+        assertTrue(e.getMessage().contains("limit of 1048576 bytes"), e.getMessage());
+    }
+}
@@ -0,0 +1,126 @@
+package de.pauleff.jnbt.formats.binary;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionTrackingDataInputStreamTest
+{
+    private static final int[] LENGTHS = {0, 1, 7, 1_001};
+
+    @Test
+    void testReadIntsFromStream() throws IOException
+    {
+        for (int length : LENGTHS)
+        {
+            int[] expected = ints(length);
+            // A 16 byte buffer refilled 3 bytes at a time splits elements across refills
+            PositionTrackingDataInputStream in = new PositionTrackingDataInputStream(trickle(encode(expected)), 16);
+            int[] actual = new int[length];
+            in.readInts(actual);
+            assertArrayEquals(expected, actual);
+            assertEquals((long) length * Integer.BYTES, in.getBytesRead());
+        }
+    }
+
+    @Test
+    void testReadLongsFromStream() throws IOException
+    {
+        for (int length : LENGTHS)
+        {
+            long[] expected = longs(length);
+            PositionTrackingDataInputStream in = new PositionTrackingDataInputStream(trickle(encode(expected)), 16);
+            long[] actual = new long[length];
+            in.readLongs(actual);
+            assertArrayEquals(expected, actual);
+            assertEquals((long) length * Long.BYTES, in.getBytesRead());
+        }
+    }
+
+    @Test
+    void testReadArraysFromBuffer() throws IOException
+    {
+        for (int length : LENGTHS)
+        {
+            int[] expectedInts = ints(length);
+            long[] expectedLongs = longs(length);
+            byte[] intBytes = encode(expectedInts);
+            byte[] longBytes = encode(expectedLongs);
+            ByteBuffer data = ByteBuffer.allocate(1 + intBytes.length + longBytes.length);
+            data.put((byte) 0x7F).put(intBytes).put(longBytes).flip();
+
+            PositionTrackingDataInputStream in = new PositionTrackingDataInputStream(data);
+            assertEquals(0x7F, in.readByte()); // Leaves the arrays unaligned
+            int[] actualInts = new int[length];
+            long[] actualLongs = new long[length];
+            in.readInts(actualInts);
+            in.readLongs(actualLongs);
+            assertArrayEquals(expectedInts, actualInts);
+            assertArrayEquals(expectedLongs, actualLongs);
+            assertEquals(data.limit(), in.getBytesRead());
+        }
+    }
+
+    @Test
+    void testReadArraysPastEnd()
+    {
+        byte[] truncated = new byte[4 * Integer.BYTES + 2];
+        assertThrows(EOFException.class, () -> new PositionTrackingDataInputStream(new ByteArrayInputStream(truncated), 16)
+                .readInts(new int[5]));
+        assertThrows(EOFException.class, () -> new PositionTrackingDataInputStream(ByteBuffer.wrap(truncated))
+                .readLongs(new long[3]));
+    }
+
+    private static int[] ints(int length)
+    {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) values[i] = i * 0x01020304 ^ -i;
+        return values;
+    }
+
+    private static long[] longs(int length)
+    {
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) values[i] = i * 0x0102030405060708L ^ -i;
+        return values;
+    }
+
+    private static byte[] encode(int[] values) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int value : values) out.writeInt(value);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encode(long[] values) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (long value : values) out.writeLong(value);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Hands out at most three bytes per read, like a slow socket or decompressor.
+     */
+    private static InputStream trickle(byte[] data)
+    {
+        return new ByteArrayInputStream(data)
+        {
+            @Override
+            public synchronized int read(byte[] b, int off, int len)
+            {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+    }
+}
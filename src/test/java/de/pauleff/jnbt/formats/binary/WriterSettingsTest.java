@@ -0,0 +1,59 @@
+package de.pauleff.jnbt.formats.binary;
+
+import de.pauleff.jnbt.api.ICompoundTag;
+import de.pauleff.jnbt.api.NBTFileFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+import static de.pauleff.jnbt.formats.binary.NBTSamples.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriterSettingsTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testTinyBuffersRoundTrip() throws IOException
+    {
+        ICompoundTag original = sampleCompound();
+        WriterSettings settings = WriterSettings.builder()
+                .bufferSize(7)
+                .deflaterBufferSize(16)
+                .compressionLevel(Deflater.BEST_SPEED)
+                .build();
+        for (Compression_Types compression : new Compression_Types[]{Compression_Types.NONE, Compression_Types.GZIP, Compression_Types.ZLIB})
+        {
+            File file = tempDir.resolve("tuned_" + compression.getName() + ".dat").toFile();
+            new NBTWriter(file, compression, settings).write(original);
+            assertEquals(compression, NBTFileHandler.getCompressionType(file));
+            assertSampleEquals(original, NBTFileFactory.readNBTFile(file));
+        }
+        assertArrayEquals(encode(original), Files.readAllBytes(tempDir.resolve("tuned_NONE.dat")));
+    }
+
+    @Test
+    void testDefaultsAndValidation()
+    {
+        WriterSettings defaults = WriterSettings.DEFAULT;
+        assertEquals(WriterSettings.DEFAULT_BUFFER_SIZE, defaults.getBufferSize());
+        assertEquals(WriterSettings.DEFAULT_DEFLATER_BUFFER_SIZE, defaults.getDeflaterBufferSize());
+        assertEquals(Deflater.DEFAULT_COMPRESSION, defaults.getCompressionLevel());
+        assertFalse(defaults.isAtomicSave());
+        assertEquals(WriterSettings.BackupMode.COPY, defaults.getBackupMode());
+        assertEquals(WriterSettings.BackupMode.HARD_LINK, WriterSettings.builder().atomicSave(true).build().getBackupMode());
+        assertEquals(WriterSettings.BackupMode.COPY,
+                WriterSettings.builder().backupMode(WriterSettings.BackupMode.COPY).atomicSave(true).build().getBackupMode());
+
+        assertThrows(IllegalArgumentException.class, () -> WriterSettings.builder().compressionLevel(10));
+        assertThrows(IllegalArgumentException.class, () -> WriterSettings.builder().bufferSize(0));
+        assertThrows(IllegalArgumentException.class, () -> WriterSettings.builder().backupCount(0));
+        assertThrows(IllegalArgumentException.class, () -> WriterSettings.builder().backupMode(null));
+    }
+}